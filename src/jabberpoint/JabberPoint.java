@@ -1,18 +1,17 @@
 package jabberpoint;
 
 import javax.swing.JOptionPane;
-import java.io.IOException;
+import javax.swing.SwingUtilities;
 
 import jabberpoint.model.Presentation;
 import jabberpoint.model.Style;
-import jabberpoint.util.PresentationLoaderContext;
-import jabberpoint.util.XMLLoader;
 import jabberpoint.view.SlideViewerFrame;
 
 public class JabberPoint {
-    private static final String IOERR = "IO Error: ";
-    private static final String JABERR = "Jabberpoint Error ";
     private static final String JABVERSION = "Jabberpoint 2.0";
+    // Set to true, with -Djabberpoint.asyncDispatch=true, to notify slow observers off the
+    // changing thread
+    private static final String ASYNC_DISPATCH = "jabberpoint.asyncDispatch";
     
     private static final String WELCOME_MESSAGE = 
             "Welcome to JabberPoint!\n\n" +
@@ -27,28 +26,25 @@ public class JabberPoint {
     public static void main(String[] argv) {
         Style.createStyles();
         Presentation presentation = new Presentation();
+        if (Boolean.getBoolean(ASYNC_DISPATCH)) {
+            // Observers that ask for it are notified on their own thread or on the event thread
+            presentation.setAsyncDispatch(SwingUtilities::invokeLater);
+        }
         SlideViewerFrame frame = new SlideViewerFrame(JABVERSION, presentation);
         
-        try {
-            if (argv.length > 0) {
-                // Only load a file if one is specified on the command line
-                // Use the Strategy pattern with XMLLoader
-                PresentationLoaderContext loaderContext = new PresentationLoaderContext(new XMLLoader());
-                loaderContext.loadPresentation(presentation, argv[0]);
-                presentation.setSlideNumber(0);
-            } else {
-                // Show welcome message with navigation information
-                JOptionPane.showMessageDialog(frame, 
-                        WELCOME_MESSAGE,
-                        "Welcome to JabberPoint", 
-                        JOptionPane.INFORMATION_MESSAGE);
-            }
-            
+        if (argv.length > 0) {
+            // Only load a file if one is specified on the command line.
+            // The frame is shown first and the slides appear as they are loaded;
+            // the loader strategy is chosen from the file type
+            frame.setVisible(true);
+            SwingUtilities.invokeLater(() -> frame.getMenuController().openFile(argv[0]));
+        } else {
+            // Show welcome message with navigation information
+            JOptionPane.showMessageDialog(frame, 
+                    WELCOME_MESSAGE,
+                    "Welcome to JabberPoint", 
+                    JOptionPane.INFORMATION_MESSAGE);
             frame.setVisible(true); // Make the frame visible to the user
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null,
-                    IOERR + ex, JABERR,
-                    JOptionPane.ERROR_MESSAGE);
         }
     }
 }
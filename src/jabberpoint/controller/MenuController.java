@@ -1,5 +1,6 @@
 package jabberpoint.controller;
 
+import java.awt.CheckboxMenuItem;
 import java.awt.MenuBar;
 import java.awt.Menu;
 import java.awt.MenuItem;
@@ -7,15 +8,26 @@ import java.awt.MenuShortcut;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import jabberpoint.model.Presentation;
+import jabberpoint.util.AutosaveScheduler;
 import jabberpoint.util.DemoLoader;
+import jabberpoint.util.PresentationJournal;
 import jabberpoint.util.PresentationLoaderContext;
-import jabberpoint.util.XMLLoader;
+import jabberpoint.util.PresentationReloader;
+import jabberpoint.util.ProgressiveLoader;
+import jabberpoint.util.PresentationSaveService;
+import jabberpoint.util.StreamingXMLLoader;
 import jabberpoint.view.AboutBox;
+import jabberpoint.view.LoadProgressDialog;
 import jabberpoint.view.SlideEditorFrame;
 
 public class MenuController extends MenuBar implements ActionListener {
@@ -24,6 +36,13 @@ public class MenuController extends MenuBar implements ActionListener {
     private Frame parent;
     private Presentation presentation;
     private PresentationLoaderContext loaderContext; // Added for Strategy pattern
+    private PresentationSaveService saveService;
+    private String currentFile;
+    private PresentationJournal journal;
+    private AutosaveScheduler autosave;
+    private PresentationReloader reloader;
+    private boolean followFile;
+    private CompletableFuture<Presentation> loading;
     
     private static final String ABOUT = "About";
     private static final String FILE = "File";
@@ -33,16 +52,20 @@ public class MenuController extends MenuBar implements ActionListener {
     private static final String NEW = "New";
     private static final String NEXT = "Next";
     private static final String OPEN = "Open";
+    private static final String DEMO = "Demo Presentation";
     private static final String PAGENR = "Page number?";
     private static final String PREV = "Prev";
+    private static final String SAVE = "Save";
     private static final String EDIT = "Edit";
     private static final String EDIT_PRESENTATION = "Edit Presentation";
     private static final String VIEW = "View";
+    private static final String FOLLOW_FILE = "Reload on Change";
     
     protected static final String DEFAULT_SAVEFILE = "presentation.xml";
     
     private static final String IOEX = "IO Exception: ";
     private static final String LOADERR = "Load Error";
+    private static final String SAVEERR = "Save Error";
     private static final String NAVIGATION_HELP_TEXT = 
             "Navigation Controls:\n\n" +
             "Next Slide:\n" +
@@ -64,8 +87,9 @@ public class MenuController extends MenuBar implements ActionListener {
         parent = frame;
         presentation = pres;
         
-        // Initialize with default XMLLoader strategy
-        loaderContext = new PresentationLoaderContext(new XMLLoader());
+        // Initialize with the streaming XML loader strategy
+        loaderContext = new PresentationLoaderContext(new StreamingXMLLoader());
+        saveService = new PresentationSaveService();
         
         MenuItem menuItem;
         
@@ -76,6 +100,9 @@ public class MenuController extends MenuBar implements ActionListener {
         fileMenu.add(menuItem = mkMenuItem(NEW));
         menuItem.addActionListener(this);
         
+        fileMenu.add(menuItem = mkMenuItem(SAVE));
+        menuItem.addActionListener(this);
+        
         fileMenu.addSeparator();
         
         fileMenu.add(menuItem = mkMenuItem(EXIT));
@@ -101,6 +128,12 @@ public class MenuController extends MenuBar implements ActionListener {
         viewMenu.add(menuItem = mkMenuItem(GOTO));
         menuItem.addActionListener(this);
         
+        viewMenu.addSeparator();
+        
+        CheckboxMenuItem followItem = new CheckboxMenuItem(FOLLOW_FILE);
+        followItem.addItemListener(e -> setFollowFile(e.getStateChange() == ItemEvent.SELECTED));
+        viewMenu.add(followItem);
+        
         add(viewMenu);
         
         Menu helpMenu = new Menu(HELP);
@@ -123,6 +156,9 @@ public class MenuController extends MenuBar implements ActionListener {
             case NEW:
                 newPresentation();
                 break;
+            case SAVE:
+                savePresentation();
+                break;
             case EXIT:
                 System.exit(0);
                 break;
@@ -163,22 +199,13 @@ public class MenuController extends MenuBar implements ActionListener {
                 options[0]);
         
         if (choice == 0) {
-            // Open File option selected - use XMLLoader strategy
-            loaderContext.setLoaderStrategy(new XMLLoader());
-            
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setCurrentDirectory(new java.io.File("."));
             int returnVal = fileChooser.showOpenDialog(parent);
             
             if (returnVal == JFileChooser.APPROVE_OPTION) {
-                try {
-                    presentation.clear();
-                    loaderContext.loadPresentation(presentation, fileChooser.getSelectedFile().getPath());
-                    presentation.setSlideNumber(0);
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(parent, IOEX + ex,
-                            LOADERR, JOptionPane.ERROR_MESSAGE);
-                }
+                // Open File option selected - the loader strategy is chosen from the file type
+                openFile(fileChooser.getSelectedFile().getPath());
             }
         } else if (choice == 1) {
             // Load Demo option selected - use DemoLoader strategy
@@ -187,11 +214,131 @@ public class MenuController extends MenuBar implements ActionListener {
         // If Cancel was selected, do nothing
     }
     
+    /**
+     * Load a presentation file in the background. Slides are shown as soon
+     * as they are loaded; a dialog shows the progress and can stop the load.
+     * @param path The file to open
+     */
+    public void openFile(String path) {
+        cancelLoading();
+        setCurrentFile(null);
+        LoadProgressDialog dialog = new LoadProgressDialog(parent, path);
+        CompletableFuture<Presentation> load = new ProgressiveLoader(presentation)
+                .load(path, dialog::setProgress);
+        loading = load;
+        dialog.setCancelAction(() -> load.cancel(false));
+        load.whenComplete((loaded, error) -> {
+            // Completed on the event thread, or by the cancel action
+            dialog.dispose();
+            if (loading == load) {
+                loading = null;
+            }
+            if (error == null) {
+                setCurrentFile(path);
+            } else if (!(error instanceof CancellationException)) {
+                showLoadError(error);
+            }
+        });
+        dialog.setVisible(true);
+    }
+    
+    private void cancelLoading() {
+        if (loading != null) {
+            loading.cancel(false);
+            loading = null;
+        }
+    }
+    
     private void newPresentation() {
+        cancelLoading();
+        setCurrentFile(null);
         presentation.clear();
         parent.repaint();
     }
     
+    private void savePresentation() {
+        if (currentFile == null) {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setCurrentDirectory(new java.io.File("."));
+            fileChooser.setSelectedFile(new java.io.File(DEFAULT_SAVEFILE));
+            if (fileChooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            setCurrentFile(fileChooser.getSelectedFile().getPath());
+        }
+        // The file is written in the background; only report failures
+        CompletableFuture<?> saved = journal != null
+                ? journal.compact() : saveService.save(presentation, currentFile);
+        saved.whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(parent,
+                        IOEX + cause.getMessage(), SAVEERR, JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+    
+    /**
+     * Remember the file the presentation belongs to. Edits are recorded in a
+     * journal next to it, unless the presentation follows changes made to
+     * the file instead. If the journal cannot be written, the whole file is
+     * autosaved.
+     */
+    private void setCurrentFile(String path) {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                System.err.println(IOEX + ex.getMessage());
+            }
+            journal = null;
+        }
+        if (autosave != null) {
+            autosave.close();
+            autosave = null;
+        }
+        if (reloader != null) {
+            reloader.close();
+            reloader = null;
+        }
+        currentFile = path;
+        if (path == null) {
+            return;
+        }
+        if (followFile) {
+            try {
+                reloader = new PresentationReloader(presentation, path);
+                return;
+            } catch (IOException ex) {
+                System.err.println(IOEX + ex.getMessage());
+            }
+        }
+        try {
+            journal = PresentationJournal.open(presentation, path);
+        } catch (IOException ex) {
+            System.err.println(IOEX + ex.getMessage());
+            autosave = new AutosaveScheduler(presentation, path, saveService);
+        }
+    }
+    
+    /**
+     * Switch between autosaving to the current file and reloading the
+     * slides that change when the file is written by another program
+     */
+    private void setFollowFile(boolean follow) {
+        followFile = follow;
+        if (currentFile != null) {
+            // Write the edits to the file itself before it is followed
+            if (follow && journal != null) {
+                journal.compact();
+            }
+            if (follow && autosave != null) {
+                autosave.saveIfChanged();
+            }
+            setCurrentFile(currentFile);
+        }
+    }
+    
     private void gotoSlide() {
         String pageNumberStr = JOptionPane.showInputDialog(PAGENR);
         int pageNumber = 0;
@@ -215,14 +362,32 @@ public class MenuController extends MenuBar implements ActionListener {
         // Switch to DemoLoader strategy
         loaderContext.setLoaderStrategy(new DemoLoader());
         
-        presentation.clear();
-        try {
-            loaderContext.loadPresentation(presentation, "");
-            presentation.setSlideNumber(0);
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(parent, IOEX + ex,
-                    LOADERR, JOptionPane.ERROR_MESSAGE);
-        }
+        cancelLoading();
+        setCurrentFile(null);
+        // Load in the background while a modal dialog blocks the frame;
+        // the loaded presentation replaces the current one in one step
+        LoadProgressDialog dialog = new LoadProgressDialog(parent, DEMO, true);
+        CompletableFuture<Presentation> load = loaderContext.loadAsync("");
+        loading = load;
+        dialog.setCancelAction(() -> load.cancel(false));
+        load.whenCompleteAsync((loaded, error) -> {
+            dialog.dispose();
+            if (loading == load) {
+                loading = null;
+            }
+            if (error == null) {
+                presentation.replaceWith(loaded);
+            } else if (!(error instanceof CancellationException)) {
+                showLoadError(error);
+            }
+        }, SwingUtilities::invokeLater);
+        dialog.setVisible(true);
+    }
+    
+    private void showLoadError(Throwable error) {
+        Throwable cause = error instanceof UncheckedIOException ? error.getCause() : error;
+        JOptionPane.showMessageDialog(parent, IOEX + cause,
+                LOADERR, JOptionPane.ERROR_MESSAGE);
     }
     
     private void showNavigationHelp() {
@@ -1,21 +1,60 @@
 package jabberpoint.model;
 
+import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
-import java.io.File;
-import javax.imageio.ImageIO;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class BitmapItem extends SlideItem {
-  private BufferedImage bufferedImage;
+  private ImageCache.Handle imageHandle;
   private String imageName;
+  private volatile boolean failed;
+  private volatile BufferedImage lastImage;
+  private CompletableFuture<BufferedImage> pendingLoad;
+  private final Set<ImageObserver> waitingObservers = new LinkedHashSet<>();
+  
+  // Pre-scaled copies of the image, keyed by their size, so painting is an unscaled blit
+  private final Map<Dimension, BufferedImage> scaledImages = new LinkedHashMap<>(4, 0.75f, true);
+  private BufferedImage scaledSource;
+  private long scaledBytes;
   
   protected static final String FILE = "File ";
   protected static final String NOTFOUND = " not found";
+  
+  // Size of the box drawn while the image is still being decoded and its header cannot be read
+  protected static final int PLACEHOLDER_WIDTH = 200;
+  protected static final int PLACEHOLDER_HEIGHT = 150;
+  private static final Color PLACEHOLDER_COLOR = Color.LIGHT_GRAY;
+  
+  protected static final int MAX_SUBSAMPLING = 16;
+  protected static final int MAX_SCALED_IMAGES = 2;
+  protected static final long MAX_SCALED_BYTES = 32L * 1024 * 1024;
 
   public BitmapItem(int level, String name) {
+    this(level, name, ImageResolver.FILES);
+  }
+
+  /**
+   * Create an item whose image is found through the given resolver
+   * @param level The level of the item
+   * @param name The name of the image
+   * @param resolver Finds the image for the name, for example in an archive
+   */
+  public BitmapItem(int level, String name, ImageResolver resolver) {
     super(level);
     imageName = name;
     try {
@@ -25,10 +64,15 @@ public class BitmapItem extends SlideItem {
         if (!name.contains("/") && !name.contains("\\")) {
           imageName = "img/" + name;
         }
-        bufferedImage = ImageIO.read(new File(imageName));
+        // The image is decoded in the background the first time it is needed
+        imageHandle = resolver.resolve(imageName);
+        if (!imageHandle.exists()) {
+          throw new IOException(imageName);
+        }
       }
     }
     catch (IOException e) {
+      failed = true;
       System.err.println(FILE + imageName + NOTFOUND);
     }
   }
@@ -41,24 +85,257 @@ public class BitmapItem extends SlideItem {
     return imageName;
   }
 
+  /**
+   * Get the handle through which the image is read
+   * @return The handle, or null if the image name could not be resolved
+   */
+  public ImageCache.Handle getImageHandle() {
+    return imageHandle;
+  }
+
+  /**
+   * Check whether a decode started by painting or prefetching is still running.
+   * This does not start a decode itself.
+   * @return true while a placeholder or a lower resolution image is drawn
+   */
+  public boolean isLoading() {
+    if (failed || imageHandle == null) {
+      return false;
+    }
+    synchronized (waitingObservers) {
+      return pendingLoad != null;
+    }
+  }
+
+  /**
+   * Get the subsampling factor at which an image still has enough pixels
+   * to be drawn at the given scale. Powers of two are used so that
+   * decodes can be shared between nearby window sizes.
+   * @param scale The scale the image is drawn at
+   * @return The subsampling factor, 1 for full resolution
+   */
+  static int subsamplingFor(float scale) {
+    int subsampling = 1;
+    if (scale <= 0) {
+      return subsampling;
+    }
+    while (subsampling < MAX_SUBSAMPLING && subsampling * 2 * scale <= 1) {
+      subsampling *= 2;
+    }
+    return subsampling;
+  }
+
+  /**
+   * Get the decoded image, starting a background decode if it is not available yet.
+   * Large images are decoded with subsampling when drawn at a small scale, and
+   * decoded again at a higher resolution once a larger scale is requested.
+   * @param observer Notified through imageUpdate() when a pending decode finishes
+   * @param scale The scale the image will be drawn at
+   * @return The image, a lower resolution image while a better one is decoded,
+   *     or null if nothing is decoded yet or the image cannot be read
+   */
+  private BufferedImage requestImage(ImageObserver observer, float scale) {
+    if (failed || imageHandle == null) {
+      return null;
+    }
+    CompletableFuture<BufferedImage> load = imageHandle.load(subsamplingFor(scale));
+    if (load.isDone() && !load.isCompletedExceptionally()) {
+      BufferedImage image = load.join();
+      lastImage = image;
+      return image;
+    }
+    synchronized (waitingObservers) {
+      if (observer != null) {
+        waitingObservers.add(observer);
+      }
+      if (load != pendingLoad) {
+        pendingLoad = load;
+        load.whenComplete((image, error) -> imageLoaded(load, image, error));
+      }
+    }
+    return lastImage;
+  }
+
+  private void imageLoaded(CompletableFuture<BufferedImage> load, BufferedImage image,
+      Throwable error) {
+    List<ImageObserver> observers;
+    synchronized (waitingObservers) {
+      if (pendingLoad == load) {
+        pendingLoad = null;
+      }
+      observers = new ArrayList<>(waitingObservers);
+      waitingObservers.clear();
+    }
+    if (error != null) {
+      failed = true;
+      System.err.println(FILE + imageName + NOTFOUND);
+    }
+    markChanged();
+    // Repaint through the regular ImageObserver path, like Toolkit images do
+    int flags = error == null ? ImageObserver.ALLBITS : ImageObserver.ALLBITS | ImageObserver.ERROR;
+    int width = image == null ? 0 : image.getWidth();
+    int height = image == null ? 0 : image.getHeight();
+    for (ImageObserver observer : observers) {
+      observer.imageUpdate(image, flags, 0, 0, width, height);
+    }
+  }
+
+  /**
+   * Get the size of the image without decoding its pixels
+   * @return The size of the image, or null if it cannot be read
+   */
+  public Dimension getImageSize() {
+    if (failed || imageHandle == null) {
+      return null;
+    }
+    try {
+      return imageHandle.getSize();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
   public Rectangle getBoundingBox(Graphics g, ImageObserver observer, float scale, Style myStyle) {
-    if (bufferedImage == null) {
+    if (failed || imageHandle == null) {
       return new Rectangle();
     }
+    // Layout only needs the size, which is read from the image header
+    Dimension size = getImageSize();
+    int width = size == null ? PLACEHOLDER_WIDTH : size.width;
+    int height = size == null ? PLACEHOLDER_HEIGHT : size.height;
     return new Rectangle((int) (myStyle.indent * scale), 0,
-        (int) (bufferedImage.getWidth(observer) * scale),
+        (int) (width * scale),
         ((int) (myStyle.leading * scale)) + 
-        (int) (bufferedImage.getHeight(observer) * scale));
+        (int) (height * scale));
   }
 
   public void draw(int x, int y, float scale, Graphics g, Style myStyle, ImageObserver observer) {
-    if (bufferedImage == null) {
+    if (failed || imageHandle == null) {
       return;
     }
     int width = x + (int) (myStyle.indent * scale);
     int height = y + (int) (myStyle.leading * scale);
-    g.drawImage(bufferedImage, width, height,(int) (bufferedImage.getWidth(observer)*scale),
-              (int) (bufferedImage.getHeight(observer)*scale), observer);
+    BufferedImage bufferedImage = requestImage(observer, scale);
+    Dimension size = getImageSize();
+    if (bufferedImage == null) {
+      int placeholderWidth = size == null ? PLACEHOLDER_WIDTH : size.width;
+      int placeholderHeight = size == null ? PLACEHOLDER_HEIGHT : size.height;
+      g.setColor(PLACEHOLDER_COLOR);
+      g.drawRect(width, height, (int) (placeholderWidth * scale),
+          (int) (placeholderHeight * scale));
+      return;
+    }
+    // The decoded image may be subsampled, so size it from the full image dimensions
+    int fullWidth = size == null ? bufferedImage.getWidth(observer) : size.width;
+    int fullHeight = size == null ? bufferedImage.getHeight(observer) : size.height;
+    int scaledWidth = (int) (fullWidth * scale);
+    int scaledHeight = (int) (fullHeight * scale);
+    if (scaledWidth <= 0 || scaledHeight <= 0) {
+      return;
+    }
+    g.drawImage(getScaledImage(bufferedImage, scaledWidth, scaledHeight, g), width, height,
+        observer);
+  }
+
+  /**
+   * Get a copy of the image at the given size, creating it if needed.
+   * Old sizes are dropped once the window is resized and the cache limits are reached.
+   */
+  private BufferedImage getScaledImage(BufferedImage source, int width, int height, Graphics g) {
+    if (width == source.getWidth() && height == source.getHeight()) {
+      return source;
+    }
+    synchronized (scaledImages) {
+      if (scaledSource != source) {
+        clearScaledImages();
+        scaledSource = source;
+      }
+      Dimension size = new Dimension(width, height);
+      BufferedImage scaled = scaledImages.get(size);
+      if (scaled != null) {
+        return scaled;
+      }
+      scaled = scaleImage(source, width, height, g);
+      long bytes = ImageCache.sizeOf(scaled);
+      if (bytes > MAX_SCALED_BYTES) {
+        return scaled;
+      }
+      scaledImages.put(size, scaled);
+      scaledBytes += bytes;
+      Iterator<BufferedImage> iterator = scaledImages.values().iterator();
+      while ((scaledBytes > MAX_SCALED_BYTES || scaledImages.size() > MAX_SCALED_IMAGES)
+          && iterator.hasNext()) {
+        scaledBytes -= ImageCache.sizeOf(iterator.next());
+        iterator.remove();
+      }
+      return scaled;
+    }
+  }
+
+  /**
+   * Discard the pre-scaled copies of the image
+   */
+  public void clearScaledImages() {
+    synchronized (scaledImages) {
+      scaledImages.clear();
+      scaledBytes = 0;
+      scaledSource = null;
+    }
+  }
+
+  /**
+   * Get the number of pre-scaled copies currently kept
+   * @return The number of scaled images
+   */
+  public int getScaledImageCount() {
+    synchronized (scaledImages) {
+      return scaledImages.size();
+    }
+  }
+
+  /**
+   * Scale an image into an image compatible with the target graphics.
+   * Downscaling halves the image in several bilinear steps, which keeps the
+   * quality close to an area-averaging filter at a fraction of the cost.
+   */
+  private static BufferedImage scaleImage(BufferedImage source, int width, int height, Graphics g) {
+    BufferedImage current = source;
+    int currentWidth = source.getWidth();
+    int currentHeight = source.getHeight();
+    do {
+      if (currentWidth > width) {
+        currentWidth = Math.max(width, currentWidth / 2);
+      } else {
+        currentWidth = width;
+      }
+      if (currentHeight > height) {
+        currentHeight = Math.max(height, currentHeight / 2);
+      } else {
+        currentHeight = height;
+      }
+      BufferedImage step = createCompatibleImage(currentWidth, currentHeight, source, g);
+      Graphics2D g2d = step.createGraphics();
+      try {
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+      } finally {
+        g2d.dispose();
+      }
+      current = step;
+    } while (currentWidth != width || currentHeight != height);
+    return current;
+  }
+
+  private static BufferedImage createCompatibleImage(int width, int height, BufferedImage source,
+      Graphics g) {
+    GraphicsConfiguration config = g instanceof Graphics2D
+        ? ((Graphics2D) g).getDeviceConfiguration() : null;
+    if (config != null) {
+      return config.createCompatibleImage(width, height, source.getTransparency());
+    }
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
   }
 
   public String toString() {
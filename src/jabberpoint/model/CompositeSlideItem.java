@@ -22,10 +22,12 @@ public class CompositeSlideItem extends SlideItem {
 
     public void add(SlideItem item) {
         children.add(item);
+        markChanged();
     }
 
     public void remove(SlideItem item) {
         children.remove(item);
+        markChanged();
     }
 
     public SlideItem getChild(int index) {
@@ -36,6 +38,19 @@ public class CompositeSlideItem extends SlideItem {
         return children.size();
     }
 
+    /**
+     * Combines the revisions of this group and its children in order, so
+     * that removing a child cannot cancel out the change it causes
+     */
+    @Override
+    public int getRevision() {
+        int revision = super.getRevision();
+        for (SlideItem child : children) {
+            revision = 31 * revision + child.getRevision();
+        }
+        return revision;
+    }
+
     @Override
     public Rectangle getBoundingBox(Graphics g, ImageObserver observer, float scale, Style style) {
         if (children.isEmpty()) {
@@ -0,0 +1,22 @@
+package jabberpoint.model;
+
+/**
+ * Stands in for a slide that could not be loaded from its SlideSource.
+ * Its title tells that loading failed. Savers refuse to write it, so that
+ * saving never replaces the real slide in the file with this placeholder.
+ */
+public class FailedSlide extends Slide {
+    private final Exception error;
+
+    FailedSlide(String title, Exception error) {
+        this.error = error;
+        setTitle(title);
+    }
+
+    /**
+     * @return Why the slide could not be loaded
+     */
+    public Exception getError() {
+        return error;
+    }
+}
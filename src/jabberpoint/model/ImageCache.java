@@ -0,0 +1,614 @@
+package jabberpoint.model;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Process-wide cache of decoded images, shared by all BitmapItems.
+ * Images are keyed by canonical path and modification time and evicted
+ * in least-recently-used order once their decoded size exceeds the budget.
+ * Images can be decoded on a background thread through Handle.load().
+ * Large images can be decoded with source subsampling when they are only
+ * displayed at a fraction of their size; a subsampled image also satisfies
+ * requests for coarser subsampling.
+ * Images can be read from files or from entries of a zip archive; archive
+ * entries are streamed from the archive when they are decoded. Each version
+ * of an archive is opened once and shared by all handles to its entries.
+ */
+public final class ImageCache {
+    /** The number of bytes of decoded pixels the shared cache keeps */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final ImageCache INSTANCE = new ImageCache(DEFAULT_MAX_BYTES);
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+                Thread thread = new Thread(runnable, "JabberPoint image decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Map<Key, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<BufferedImage>> pending = new HashMap<>();
+    // Open archives by path, modification time and length
+    private final Map<String, WeakReference<Archive>> archives = new HashMap<>();
+    private long maxBytes;
+    private long residentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache with its own budget. Most code should use getInstance().
+     * @param maxBytes The maximum number of bytes of decoded pixels to keep
+     */
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Open an image file, decoding it unless it is already cached
+     * @param fileName The name of the image file
+     * @return A handle to the cached image
+     * @throws IOException If the file cannot be read or decoded
+     */
+    public Handle open(String fileName) throws IOException {
+        Handle handle = handle(fileName);
+        handle.getImage();
+        return handle;
+    }
+
+    /**
+     * Get a handle to an image file without decoding it
+     * @param fileName The name of the image file
+     * @return A handle to the image
+     * @throws IOException If the file name cannot be resolved
+     */
+    public Handle handle(String fileName) throws IOException {
+        return new Handle(this, new FileSource(new File(fileName).getCanonicalFile()));
+    }
+
+    /**
+     * Open a zip archive to read images from. Everyone who opens the same
+     * version of an archive shares one open ZipFile and its entry names.
+     * The archive is closed once nothing uses it any more.
+     * @param file The archive file
+     * @return The archive
+     * @throws IOException If the archive cannot be opened
+     */
+    public Archive openArchive(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        String key = canonical.getPath() + "@" + canonical.lastModified() + ":"
+                + canonical.length();
+        synchronized (archives) {
+            archives.values().removeIf(reference -> reference.get() == null);
+            WeakReference<Archive> reference = archives.get(key);
+            Archive archive = reference != null ? reference.get() : null;
+            if (archive == null) {
+                archive = new Archive(this, canonical);
+                archives.put(key, new WeakReference<>(archive));
+            }
+            return archive;
+        }
+    }
+
+    private BufferedImage get(Key key) throws IOException {
+        try {
+            return load(key, Runnable::run).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private CompletableFuture<BufferedImage> load(Key key, Executor executor) {
+        CompletableFuture<BufferedImage> future;
+        synchronized (this) {
+            BufferedImage image = findResident(key);
+            if (image != null) {
+                hits++;
+                return CompletableFuture.completedFuture(image);
+            }
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            misses++;
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+        }
+        CompletableFuture<BufferedImage> result = future;
+        executor.execute(() -> decode(key, result));
+        return result;
+    }
+
+    /**
+     * Find a resident image decoded with the requested or a finer subsampling
+     */
+    private BufferedImage findResident(Key key) {
+        for (int subsampling = key.subsampling; subsampling >= 1; subsampling--) {
+            BufferedImage image = images.get(key.withSubsampling(subsampling));
+            if (image != null) {
+                return image;
+            }
+        }
+        return null;
+    }
+
+    private void decode(Key key, CompletableFuture<BufferedImage> future) {
+        try {
+            BufferedImage image = read(key.source, key.subsampling);
+            synchronized (this) {
+                pending.remove(key);
+                images.put(key, image);
+                residentBytes += sizeOf(image);
+                evictOverBudget();
+            }
+            future.complete(image);
+        } catch (IOException | RuntimeException ex) {
+            synchronized (this) {
+                pending.remove(key);
+            }
+            future.completeExceptionally(ex instanceof IOException
+                    ? new UncheckedIOException((IOException) ex) : ex);
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<BufferedImage> iterator = images.values().iterator();
+        // Never evict the entry that was just added, even if it alone exceeds the budget
+        while (residentBytes > maxBytes && images.size() > 1 && iterator.hasNext()) {
+            residentBytes -= sizeOf(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Compute the decoded size of an image
+     * @param image The image
+     * @return The number of bytes used by its pixels
+     */
+    static long sizeOf(BufferedImage image) {
+        int bytesPerPixel = (image.getColorModel().getPixelSize() + 7) / 8;
+        return (long) image.getWidth() * image.getHeight() * Math.max(1, bytesPerPixel);
+    }
+
+    /**
+     * Remove all images from the cache. Statistics are kept.
+     */
+    public synchronized void clear() {
+        images.clear();
+        residentBytes = 0;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evictOverBudget();
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Reference to an image in the cache. The handle does not keep the
+     * image alive; an evicted image is decoded again on the next access.
+     */
+    public static final class Handle {
+        private final ImageCache cache;
+        private final Source source;
+        private volatile Key key;
+        private volatile Key probedKey;
+        private volatile Dimension probedSize;
+
+        private Handle(ImageCache cache, Source source) {
+            this.cache = cache;
+            this.source = source;
+            this.key = new Key(source, source.lastModified(), 1);
+        }
+
+        /**
+         * Get the full resolution image, decoding it on the calling thread if needed
+         * @return The image
+         * @throws IOException If the image had to be decoded and that failed
+         */
+        public BufferedImage getImage() throws IOException {
+            return getImage(1);
+        }
+
+        /**
+         * Get the image decoded with at most the given subsampling,
+         * decoding it on the calling thread if needed
+         * @param subsampling The subsampling factor, 1 for full resolution
+         * @return The image
+         * @throws IOException If the image had to be decoded and that failed
+         */
+        public BufferedImage getImage(int subsampling) throws IOException {
+            return cache.get(currentKey(subsampling));
+        }
+
+        /**
+         * Get the full resolution image, decoding it on a background thread if needed.
+         * A decode failure completes the future with an UncheckedIOException.
+         * @return A future that completes with the image
+         */
+        public CompletableFuture<BufferedImage> load() {
+            return load(1);
+        }
+
+        /**
+         * Get the image decoded with at most the given subsampling,
+         * decoding it on a background thread if needed
+         * @param subsampling The subsampling factor, 1 for full resolution
+         * @return A future that completes with the image
+         */
+        public CompletableFuture<BufferedImage> load(int subsampling) {
+            return cache.load(currentKey(subsampling), DECODER);
+        }
+
+        private Key currentKey(int subsampling) {
+            Key current = key.withSubsampling(Math.max(1, subsampling));
+            synchronized (cache) {
+                if (cache.findResident(current) != null || cache.pending.containsKey(current)) {
+                    return current;
+                }
+            }
+            // Not resident: pick up a changed file before decoding again
+            key = new Key(source, source.lastModified(), 1);
+            return key.withSubsampling(current.subsampling);
+        }
+
+        /**
+         * Get the full resolution image if it is already decoded, without decoding it
+         * @return The image, or null if it is not resident
+         */
+        public BufferedImage peek() {
+            synchronized (cache) {
+                return cache.images.get(key);
+            }
+        }
+
+        /**
+         * Get the size of the image. If the image is not decoded, only the
+         * header of the file is read; no pixels are decoded.
+         * @return The width and height of the image
+         * @throws IOException If the header cannot be read
+         */
+        public Dimension getSize() throws IOException {
+            BufferedImage image = peek();
+            if (image != null) {
+                return new Dimension(image.getWidth(), image.getHeight());
+            }
+            Key current = currentKey(1);
+            Dimension size = probedSize;
+            if (size == null || !current.equals(probedKey)) {
+                size = probeSize(source);
+                probedSize = size;
+                probedKey = current;
+            }
+            return new Dimension(size);
+        }
+
+        /**
+         * Check whether the image file exists, without decoding it
+         * @return true if the file exists
+         */
+        public boolean exists() {
+            return source.exists();
+        }
+
+        /**
+         * Open the encoded bytes of the image, for example to copy them
+         * @return A stream that the caller must close
+         * @throws IOException If the image cannot be opened
+         */
+        public InputStream openStream() throws IOException {
+            return source.openStream();
+        }
+
+        public String getPath() {
+            return source.getPath();
+        }
+    }
+
+    /**
+     * A version of a zip archive that images are read from. The ZipFile is
+     * opened once and closed by the garbage collector when neither the
+     * archive nor a handle to one of its entries is used any more.
+     */
+    public static final class Archive {
+        private final ImageCache cache;
+        private final File file;
+        private final long lastModified;
+        private final ZipFile zip;
+        private final Set<String> entryNames;
+
+        private Archive(ImageCache cache, File file) throws IOException {
+            this.cache = cache;
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.zip = new ZipFile(file);
+            Set<String> names = new HashSet<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+            this.entryNames = Collections.unmodifiableSet(names);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The names of all entries in the archive
+         */
+        public Set<String> getEntryNames() {
+            return entryNames;
+        }
+
+        public boolean contains(String entryName) {
+            return entryNames.contains(entryName);
+        }
+
+        /**
+         * Open an entry of the archive
+         * @param entryName The name of the entry
+         * @return A stream that the caller must close; the archive stays open
+         * @throws IOException If the entry does not exist or cannot be read
+         */
+        public InputStream openStream(String entryName) throws IOException {
+            ZipEntry entry = zip.getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("Cannot read " + file + "!/" + entryName);
+            }
+            return zip.getInputStream(entry);
+        }
+
+        /**
+         * Get a handle to an image entry without decoding it
+         * @param entryName The name of the image entry
+         * @return A handle to the image
+         */
+        public Handle handle(String entryName) {
+            return new Handle(cache, new ZipEntrySource(this, entryName));
+        }
+    }
+
+    /**
+     * Where the encoded bytes of an image are read from
+     */
+    private interface Source {
+        String getPath();
+
+        long lastModified();
+
+        boolean exists();
+
+        InputStream openStream() throws IOException;
+
+        ImageInputStream openImage() throws IOException;
+    }
+
+    private static final class FileSource implements Source {
+        private final File file;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        public long lastModified() {
+            return file.lastModified();
+        }
+
+        @Override
+        public boolean exists() {
+            return file.isFile();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        public ImageInputStream openImage() throws IOException {
+            ImageInputStream input = ImageIO.createImageInputStream(file);
+            if (input == null) {
+                throw new IOException("Cannot read " + file);
+            }
+            return input;
+        }
+    }
+
+    private static final class ZipEntrySource implements Source {
+        private final Archive archive;
+        private final String entryName;
+
+        ZipEntrySource(Archive archive, String entryName) {
+            this.archive = archive;
+            this.entryName = entryName;
+        }
+
+        @Override
+        public String getPath() {
+            return archive.file.getPath() + "!/" + entryName;
+        }
+
+        @Override
+        public long lastModified() {
+            return archive.lastModified;
+        }
+
+        @Override
+        public boolean exists() {
+            return archive.contains(entryName);
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return archive.openStream(entryName);
+        }
+
+        @Override
+        public ImageInputStream openImage() throws IOException {
+            InputStream in = openStream();
+            // Cache in memory rather than in a temporary file; closing also closes the entry
+            return new MemoryCacheImageInputStream(in) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        in.close();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Decode an image, reading only every n-th pixel in both directions
+     * @param source The image file or archive entry
+     * @param subsampling The subsampling factor, 1 for full resolution
+     * @return The decoded image
+     * @throws IOException If no reader can handle the file or decoding fails
+     */
+    private static BufferedImage read(Source source, int subsampling) throws IOException {
+        try (ImageInputStream input = source.openImage()) {
+            ImageReader reader = getReader(input, source);
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader getReader(ImageInputStream input, Source source) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format: " + source.getPath());
+        }
+        return readers.next();
+    }
+
+    /**
+     * Read the dimensions of an image from its header
+     * @param source The image file or archive entry
+     * @return The width and height of the first image in the file
+     * @throws IOException If no reader can handle the file or the header is invalid
+     */
+    private static Dimension probeSize(Source source) throws IOException {
+        try (ImageInputStream input = source.openImage()) {
+            ImageReader reader = getReader(input, source);
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Cache key: canonical path plus modification time and the subsampling used to decode
+     */
+    private static final class Key {
+        private final Source source;
+        private final String path;
+        private final long lastModified;
+        private final int subsampling;
+
+        Key(Source source, long lastModified, int subsampling) {
+            this.source = source;
+            this.path = source.getPath();
+            this.lastModified = lastModified;
+            this.subsampling = subsampling;
+        }
+
+        Key withSubsampling(int otherSubsampling) {
+            return otherSubsampling == subsampling
+                    ? this : new Key(source, lastModified, otherSubsampling);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return lastModified == key.lastModified && subsampling == key.subsampling
+                    && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, subsampling);
+        }
+    }
+}
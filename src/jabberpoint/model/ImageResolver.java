@@ -0,0 +1,23 @@
+package jabberpoint.model;
+
+import java.io.IOException;
+
+/**
+ * Finds the image that a BitmapItem refers to by name. The default
+ * resolver reads image files; loaders of archives supply a resolver that
+ * reads the images from the archive instead.
+ */
+public interface ImageResolver {
+    /**
+     * Resolves names to files through the shared ImageCache
+     */
+    ImageResolver FILES = name -> ImageCache.getInstance().handle(name);
+
+    /**
+     * Get a handle to an image without decoding it
+     * @param name The name of the image, as returned by BitmapItem.getName()
+     * @return A handle to the image
+     * @throws IOException If the name cannot be resolved
+     */
+    ImageCache.Handle resolve(String name) throws IOException;
+}
@@ -0,0 +1,172 @@
+package jabberpoint.model;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of slides backed by a SlideSource. Slides are loaded on first access
+ * and kept in a bounded LRU cache. A slide that was modified after loading
+ * is never evicted, so edits are not lost. Slides added to the list are
+ * kept in memory as well.
+ */
+class LazySlideList extends AbstractList<Slide> {
+    private static final String LOADERR = "Error loading slide ";
+
+    private final SlideSource source;
+    private final int cacheSize;
+    // Each entry is either the index of a slide in the source or a Slide in memory
+    private final List<Object> entries;
+    private final Map<Integer, CachedSlide> cache;
+    private final Map<Integer, Slide> pinned = new HashMap<>();
+
+    LazySlideList(SlideSource source, int cacheSize) {
+        this.source = source;
+        this.cacheSize = cacheSize;
+        int size = source.getSize();
+        this.entries = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            entries.add(index);
+        }
+        this.cache = new LinkedHashMap<Integer, CachedSlide>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedSlide> eldest) {
+                if (size() <= LazySlideList.this.cacheSize) {
+                    return false;
+                }
+                CachedSlide cached = eldest.getValue();
+                if (cached.slide.getRevision() != cached.revision) {
+                    pinned.put(eldest.getKey(), cached.slide);
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Slide get(int index) {
+        Object entry = entries.get(index);
+        if (entry instanceof Slide) {
+            return (Slide) entry;
+        }
+        Integer sourceIndex = (Integer) entry;
+        Slide slide = pinned.get(sourceIndex);
+        if (slide != null) {
+            return slide;
+        }
+        CachedSlide cached = cache.get(sourceIndex);
+        if (cached != null) {
+            return cached.slide;
+        }
+        slide = load(sourceIndex);
+        cache.put(sourceIndex, new CachedSlide(slide));
+        return slide;
+    }
+
+    private Slide load(int sourceIndex) {
+        try {
+            return source.loadSlide(sourceIndex);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println(LOADERR + (sourceIndex + 1) + ": " + ex.getMessage());
+            // Shown instead of the slide, but never saved over it
+            return new FailedSlide(LOADERR + (sourceIndex + 1), ex);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized Slide set(int index, Slide slide) {
+        Slide previous = get(index);
+        forget(entries.set(index, slide));
+        return previous;
+    }
+
+    @Override
+    public synchronized void add(int index, Slide slide) {
+        entries.add(index, slide);
+        modCount++;
+    }
+
+    @Override
+    public synchronized Slide remove(int index) {
+        Slide previous = get(index);
+        forget(entries.remove(index));
+        modCount++;
+        return previous;
+    }
+
+    private void forget(Object entry) {
+        if (entry instanceof Integer) {
+            cache.remove(entry);
+            pinned.remove(entry);
+        }
+    }
+
+    /**
+     * Get a snapshot of a slide without loading it. A slide that is not in
+     * memory or was not modified since it was loaded is read from the source
+     * again when the snapshot is used.
+     * @param index The index of the slide
+     * @param previous The previous snapshot of the slide, or null
+     * @return The previous snapshot if the slide did not change, else a new one
+     */
+    synchronized SlideSnapshot snapshot(int index, SlideSnapshot previous) {
+        Object entry = entries.get(index);
+        Slide slide;
+        if (entry instanceof Slide) {
+            slide = (Slide) entry;
+        } else {
+            Integer sourceIndex = (Integer) entry;
+            slide = pinned.get(sourceIndex);
+            CachedSlide cached = cache.get(sourceIndex);
+            if (slide == null && cached != null && cached.slide.getRevision() != cached.revision) {
+                slide = cached.slide;
+            }
+            if (slide == null) {
+                return previous != null ? previous : SlideSnapshot.of(source, sourceIndex);
+            }
+        }
+        if (previous != null && previous.isLoaded()
+                && previous.getRevision() == slide.getRevision()) {
+            return previous;
+        }
+        return SlideSnapshot.of(slide);
+    }
+
+    /**
+     * Get the number of slides currently held in memory
+     * @return The number of cached, modified and added slides
+     */
+    synchronized int getResidentCount() {
+        int count = cache.size() + pinned.size();
+        for (Object entry : entries) {
+            if (entry instanceof Slide) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A loaded slide and its revision at load time
+     */
+    private static final class CachedSlide {
+        private final Slide slide;
+        private final int revision;
+
+        CachedSlide(Slide slide) {
+            this.slide = slide;
+            this.revision = slide.getRevision();
+        }
+    }
+}
@@ -2,4 +2,13 @@ package jabberpoint.model;
 
 public interface Observer {
     void update(Presentation presentation, Slide slide);
+
+    /**
+     * Tell on which thread this observer wants to be notified when the
+     * presentation dispatches notifications asynchronously
+     * @return SYNCHRONOUS unless overridden
+     */
+    default ObserverDispatch getDispatch() {
+        return ObserverDispatch.SYNCHRONOUS;
+    }
 }
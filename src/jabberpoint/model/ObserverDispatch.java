@@ -0,0 +1,14 @@
+package jabberpoint.model;
+
+/**
+ * The thread an Observer wants to be notified on when the presentation
+ * dispatches notifications asynchronously. See Presentation.setAsyncDispatch().
+ */
+public enum ObserverDispatch {
+    /** Notified on the thread that changed the presentation, before the change returns */
+    SYNCHRONOUS,
+    /** Notified later on a thread of its own, so a slow observer delays no one else */
+    BACKGROUND,
+    /** Notified later on the event thread, for observers that update Swing components */
+    EVENT_THREAD
+}
@@ -0,0 +1,99 @@
+package jabberpoint.model;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers the notifications of one observer on its own executor. An
+ * observer is only interested in the latest state, so a notification that
+ * arrives while another one is still waiting replaces it: the queue never
+ * holds more than one notification, however slow the observer is.
+ */
+class ObserverQueue {
+    private final Observer observer;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    // The notification waiting to be delivered, or null if none is waiting
+    private final AtomicReference<Notification> pending = new AtomicReference<>();
+    private volatile boolean closed;
+    private long coalesced;
+
+    /**
+     * Deliver on a background thread that belongs to this queue
+     * @param observer The observer to notify
+     */
+    ObserverQueue(Observer observer) {
+        this.observer = observer;
+        this.ownExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable,
+                    "JabberPoint observer " + observer.getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = ownExecutor;
+    }
+
+    /**
+     * Deliver on a shared executor, such as the event thread
+     * @param observer The observer to notify
+     * @param executor The executor that runs the observer
+     */
+    ObserverQueue(Observer observer, Executor executor) {
+        this.observer = observer;
+        this.executor = executor;
+        this.ownExecutor = null;
+    }
+
+    /**
+     * Queue a notification, replacing one that was not delivered yet
+     */
+    void post(Presentation presentation, Slide slide) {
+        if (closed) {
+            return;
+        }
+        if (pending.getAndSet(new Notification(presentation, slide)) != null) {
+            synchronized (this) {
+                coalesced++;
+            }
+            return;
+        }
+        executor.execute(this::deliver);
+    }
+
+    private void deliver() {
+        Notification notification = pending.getAndSet(null);
+        if (notification != null && !closed) {
+            observer.update(notification.presentation, notification.slide);
+        }
+    }
+
+    /**
+     * @return The number of notifications that were replaced by a later one
+     */
+    synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * Drop waiting notifications and stop the thread of this queue
+     */
+    void close() {
+        closed = true;
+        pending.set(null);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    private static final class Notification {
+        private final Presentation presentation;
+        private final Slide slide;
+
+        Notification(Presentation presentation, Slide slide) {
+            this.presentation = presentation;
+            this.slide = slide;
+        }
+    }
+}
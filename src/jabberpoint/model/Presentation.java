@@ -2,106 +2,672 @@ package jabberpoint.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
+/**
+ * A presentation: a title, a list of slides and the current slide number.
+ * <p>
+ * A presentation may be read and changed from several threads:
+ * <ul>
+ * <li>Changes are serialized. Each change, together with the events and
+ *     notifications it causes, completes before the next one starts, and a
+ *     batch keeps other threads from changing the presentation until it ends.
+ *     Listeners and synchronous observers run on the changing thread with
+ *     the presentation locked, so they must not wait for another thread
+ *     that changes it.</li>
+ * <li>Reads do not lock. getSize(), getSlide() and the other getters use an
+ *     optimistic read that is retried under a read lock only when a change
+ *     happened at the same time, so a reader sees either the state before or
+ *     after a change, never a half-made one.</li>
+ * <li>Observers and listeners may be added or removed from any thread, also
+ *     while they are being notified.</li>
+ * </ul>
+ * The slides themselves are not synchronized: edit them through
+ * appendItem() and slideChanged(), or read them on another thread from
+ * getVersion() or a snapshot().
+ */
 public class Presentation implements Observable {
+    /** The number of slides kept in memory when slides are loaded on demand */
+    public static final int DEFAULT_SLIDE_CACHE_SIZE = 64;
+
+    // Serializes writers, including the events and notifications of a change
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Guards the fields below against readers while a writer changes them
+    private final StampedLock stateLock = new StampedLock();
     private String title;
     private List<Slide> slides;
     private int currentSlideNumber;
-    private List<Observer> observers;
+    // Made by getVersion() and then kept up to date by every change;
+    // getVersion() also copies slides that were edited in place
+    private PresentationVersion version;
+
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<PresentationListener> listeners =
+            new CopyOnWriteArrayList<>();
+    // Only used by the thread that holds the write lock
+    private int updateDepth;
+    private boolean notifyPending;
+    // Set when notifications are dispatched asynchronously
+    private volatile Executor eventThread;
+    private final Map<Observer, ObserverQueue> observerQueues = new ConcurrentHashMap<>();
+    private PresentationEventPublisher eventPublisher;
 
     public Presentation() {
         this.title = "New Presentation";
         this.slides = new ArrayList<>();
         this.currentSlideNumber = 0; // Initialize to 0 instead of -1 to fix test failures
-        this.observers = new ArrayList<>();
     }
 
     public int getSize() {
-        return slides.size();
+        return read(() -> slides.size());
     }
 
     public String getTitle() {
-        return title;
+        return read(() -> title);
     }
 
     public void setTitle(String title) {
-        this.title = title;
-        notifyObservers();
+        writeLock.lock();
+        try {
+            write(() -> {
+                this.title = title;
+                changeVersion(current -> current.withTitle(title));
+            });
+            fire(new PresentationEvent.TitleChanged(this, title));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public int getSlideNumber() {
-        return currentSlideNumber;
+        return read(() -> currentSlideNumber);
     }
 
     public void setSlideNumber(int number) {
-        if (number < -1 || (slides.size() > 0 && number >= slides.size())) {
-            throw new IllegalArgumentException("Invalid slide number: " + number);
+        writeLock.lock();
+        try {
+            if (number < -1 || (slides.size() > 0 && number >= slides.size())) {
+                throw new IllegalArgumentException("Invalid slide number: " + number);
+            }
+            int oldNumber = currentSlideNumber;
+            write(() -> {
+                currentSlideNumber = number;
+                changeVersion(current -> current.withSlideNumber(number));
+            });
+            if (oldNumber != number) {
+                fire(new PresentationEvent.NavigationChanged(this, oldNumber, number));
+            }
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
         }
-        currentSlideNumber = number;
-        notifyObservers();
     }
 
     public void previousSlide() {
-        if (currentSlideNumber > 0) {
-            setSlideNumber(currentSlideNumber - 1);
+        writeLock.lock();
+        try {
+            if (currentSlideNumber > 0) {
+                setSlideNumber(currentSlideNumber - 1);
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     public void nextSlide() {
-        if (currentSlideNumber < (slides.size() - 1)) {
-            setSlideNumber(currentSlideNumber + 1);
+        writeLock.lock();
+        try {
+            if (currentSlideNumber < (slides.size() - 1)) {
+                setSlideNumber(currentSlideNumber + 1);
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     public void clear() {
-        slides = new ArrayList<>();
-        setSlideNumber(0); // Changed from -1 to 0 to be consistent with constructor
+        writeLock.lock();
+        try {
+            write(() -> {
+                slides = new ArrayList<>();
+                version = null;
+            });
+            fire(new PresentationEvent.SlidesReplaced(this));
+            setSlideNumber(0); // Changed from -1 to 0 to be consistent with constructor
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the slides with slides loaded on demand from a source
+     * @param source The source of the slides
+     */
+    public void setSlideSource(SlideSource source) {
+        setSlideSource(source, DEFAULT_SLIDE_CACHE_SIZE);
+    }
+
+    /**
+     * Replace the slides with slides loaded on demand from a source.
+     * At most cacheSize unmodified slides are kept in memory.
+     * @param source The source of the slides
+     * @param cacheSize The number of loaded slides to keep
+     */
+    public void setSlideSource(SlideSource source, int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+        }
+        writeLock.lock();
+        try {
+            write(() -> {
+                slides = new LazySlideList(source, cacheSize);
+                version = null;
+            });
+            fire(new PresentationEvent.SlidesReplaced(this));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Take over the title and slides of a presentation that was loaded
+     * separately, for example on another thread, and show its first slide.
+     * The loaded presentation must not be used afterwards.
+     * @param loaded The loaded presentation
+     */
+    public void replaceWith(Presentation loaded) {
+        writeLock.lock();
+        loaded.writeLock.lock();
+        try {
+            String loadedTitle = loaded.title;
+            List<Slide> loadedSlides = loaded.slides;
+            loaded.write(() -> {
+                loaded.slides = new ArrayList<>();
+                loaded.version = null;
+            });
+            write(() -> {
+                title = loadedTitle;
+                slides = loadedSlides;
+                version = null;
+            });
+            fire(new PresentationEvent.SlidesReplaced(this));
+            setSlideNumber(0);
+        } finally {
+            loaded.writeLock.unlock();
+            writeLock.unlock();
+        }
     }
 
     public void addSlide(Slide slide) {
-        slides.add(slide);
-        notifyObservers();
+        writeLock.lock();
+        try {
+            insertSlide(slides.size(), slide);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Insert a slide before the slide at the given index
+     * @param index The index of the new slide, from 0 to getSize()
+     * @param slide The slide to insert
+     */
+    public void insertSlide(int index, Slide slide) {
+        writeLock.lock();
+        try {
+            if (index < 0 || index > slides.size()) {
+                throw new IllegalArgumentException("Invalid slide index: " + index);
+            }
+            write(() -> {
+                slides.add(index, slide);
+                changeVersion(current -> current.insertSlide(index, SlideSnapshot.of(slide)));
+            });
+            fire(new PresentationEvent.SlideAdded(this, index, slide));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the slide at the given index. The current slide number is kept.
+     * @param index The index of the slide to replace
+     * @param slide The new slide
+     */
+    public void replaceSlide(int index, Slide slide) {
+        writeLock.lock();
+        try {
+            if (index < 0 || index >= slides.size()) {
+                throw new IllegalArgumentException("Invalid slide index: " + index);
+            }
+            Slide removed = slides.get(index);
+            write(() -> {
+                slides.set(index, slide);
+                changeVersion(current -> current.withSlide(index, SlideSnapshot.of(slide)));
+            });
+            fire(new PresentationEvent.SlideReplaced(this, index, removed, slide));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Append an item to a slide
+     * @param slideIndex The index of the slide
+     * @param item The item to append
+     */
+    public void appendItem(int slideIndex, SlideItem item) {
+        writeLock.lock();
+        try {
+            Slide slide = getSlide(slideIndex);
+            if (slide == null) {
+                throw new IllegalArgumentException("Invalid slide index: " + slideIndex);
+            }
+            write(() -> {
+                slide.append(item);
+                changeVersion(current -> current.withSlide(slideIndex, SlideSnapshot.of(slide)));
+            });
+            fire(new PresentationEvent.ItemAdded(this, slideIndex, slide.getSize() - 1, item));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Tell listeners and observers that a slide was edited in place,
+     * for example with Slide.setTitle()
+     * @param slideIndex The index of the slide
+     */
+    public void slideChanged(int slideIndex) {
+        writeLock.lock();
+        try {
+            if (slideIndex < 0 || slideIndex >= slides.size()) {
+                throw new IllegalArgumentException("Invalid slide index: " + slideIndex);
+            }
+            write(() -> changeVersion(current -> current.withSlide(slideIndex,
+                    snapshotAt(slideIndex, current.getSlide(slideIndex)))));
+            fire(new PresentationEvent.SlideChanged(this, slideIndex));
+            notifyObservers();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void removeSlide(int index) {
-        if (index >= 0 && index < slides.size()) {
-            slides.remove(index);
-            
-            if (currentSlideNumber >= slides.size()) {
-                setSlideNumber(slides.size() - 1);
-            } else {
-                notifyObservers();
+        writeLock.lock();
+        try {
+            if (index >= 0 && index < slides.size()) {
+                Slide removed = slides.get(index);
+                write(() -> {
+                    slides.remove(index);
+                    changeVersion(current -> current.removeSlide(index));
+                });
+                fire(new PresentationEvent.SlideRemoved(this, index, removed));
+
+                if (currentSlideNumber >= slides.size()) {
+                    setSlideNumber(slides.size() - 1);
+                } else {
+                    notifyObservers();
+                }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     public Slide getSlide(int number) {
+        return read(() -> slideAt(number));
+    }
+
+    /**
+     * @return true if the slides are loaded on demand from a SlideSource
+     */
+    public boolean hasSlideSource() {
+        return read(() -> slides instanceof LazySlideList);
+    }
+
+    public Slide getCurrentSlide() {
+        return read(() -> slideAt(currentSlideNumber));
+    }
+
+    /**
+     * Copy a slide while no change can be made through this presentation,
+     * so that the copy can be read on another thread
+     * @param slide A slide of this presentation
+     * @return The copy
+     */
+    public SlideSnapshot snapshotSlide(Slide slide) {
+        writeLock.lock();
+        try {
+            return SlideSnapshot.of(slide);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Slide slideAt(int number) {
         if (number < 0 || number >= slides.size()) {
             return null;
         }
         return slides.get(number);
     }
 
-    public Slide getCurrentSlide() {
-        return getSlide(currentSlideNumber);
-    }
-
     @Override
     public void addObserver(Observer observer) {
-        if (!observers.contains(observer)) {
-            observers.add(observer);
+        writeLock.lock();
+        try {
+            if (observers.addIfAbsent(observer)) {
+                queueIfAsync(observer);
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        writeLock.lock();
+        try {
+            observers.remove(observer);
+            ObserverQueue queue = observerQueues.remove(observer);
+            if (queue != null) {
+                queue.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Switch asynchronous dispatch on or off. When it is on, observers that
+     * ask for BACKGROUND dispatch each get a queue and a thread of their own,
+     * and observers that ask for EVENT_THREAD dispatch get a queue that is
+     * delivered on the given executor. Queued observers only see the latest
+     * state: notifications that arrive while one is waiting are merged, so a
+     * slow observer never holds up changes to the presentation. SYNCHRONOUS
+     * observers and PresentationListeners are always called directly.
+     * @param eventThread Runs EVENT_THREAD observers, for example
+     *        SwingUtilities::invokeLater, or null to notify every observer directly
+     */
+    public void setAsyncDispatch(Executor eventThread) {
+        writeLock.lock();
+        try {
+            for (ObserverQueue queue : observerQueues.values()) {
+                queue.close();
+            }
+            observerQueues.clear();
+            this.eventThread = eventThread;
+            for (Observer observer : observers) {
+                queueIfAsync(observer);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isAsyncDispatch() {
+        return eventThread != null;
+    }
+
+    private void queueIfAsync(Observer observer) {
+        if (eventThread == null) {
+            return;
+        }
+        ObserverDispatch dispatch = observer.getDispatch();
+        if (dispatch == ObserverDispatch.BACKGROUND) {
+            observerQueues.put(observer, new ObserverQueue(observer));
+        } else if (dispatch == ObserverDispatch.EVENT_THREAD) {
+            observerQueues.put(observer, new ObserverQueue(observer, eventThread));
+        }
+    }
+
+    /**
+     * Get the number of notifications of a queued observer that were merged
+     * into a later one because the observer had not caught up yet
+     * @param observer The observer
+     * @return The number of merged notifications, 0 if the observer is not queued
+     */
+    public long getCoalescedCount(Observer observer) {
+        ObserverQueue queue = observerQueues.get(observer);
+        return queue == null ? 0 : queue.getCoalescedCount();
+    }
+
+    /**
+     * Start a group of changes. Observers are not notified until the matching
+     * endUpdate(), and then only once. Listeners still see every change.
+     * Calls may be nested; prefer batch(), which cannot leave a group open.
+     * Other threads cannot change the presentation until the group ends, so
+     * the matching endUpdate() must be called on the same thread.
+     */
+    public void beginUpdate() {
+        writeLock.lock();
+        updateDepth++;
+    }
+
+    /**
+     * End a group of changes started with beginUpdate(). When the outermost
+     * group ends, observers are notified once if anything notified them
+     * during the group.
+     */
+    public void endUpdate() {
+        if (!writeLock.isHeldByCurrentThread() || updateDepth == 0) {
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+        }
+        try {
+            updateDepth--;
+            if (updateDepth == 0 && notifyPending) {
+                notifyPending = false;
+                notifyObservers();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Make a group of changes with a single notification at the end
+     * @param changes The changes to make
+     */
+    public void batch(Runnable changes) {
+        beginUpdate();
+        try {
+            changes.run();
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * @return true if the current thread has started a group of changes that has not ended
+     */
+    public boolean isUpdating() {
+        return writeLock.isHeldByCurrentThread() && updateDepth > 0;
     }
 
     @Override
     public void notifyObservers() {
-        for (Observer observer : observers) {
-            observer.update(this, getCurrentSlide());
+        writeLock.lock();
+        try {
+            if (updateDepth > 0) {
+                notifyPending = true;
+                return;
+            }
+            Slide current = getCurrentSlide();
+            for (Observer observer : observers) {
+                ObserverQueue queue = observerQueues.get(observer);
+                if (queue != null) {
+                    queue.post(this, current);
+                } else {
+                    observer.update(this, current);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Create a copy of this presentation that can be read on another thread
+     * while this one is edited. The slide list and the slides are copied;
+     * the slide items are shared.
+     * @return A presentation with the same title and slides, without observers
+     */
+    public Presentation snapshot() {
+        return getVersion().toPresentation();
+    }
+
+    /**
+     * Get the current state as an unchangeable PresentationVersion. The
+     * first call copies every slide; after that each change makes a new
+     * version that shares the unchanged slides with the previous one, so
+     * getting a version is cheap and versions can be kept as a history.
+     * Slides edited in place, with or without slideChanged(), are found by
+     * their revision and copied again. Slides of a slide source that were
+     * not loaded are not copied; the version reads them from the source.
+     * @return The current version
+     */
+    public PresentationVersion getVersion() {
+        writeLock.lock();
+        try {
+            PresentationVersion current = version;
+            if (current == null) {
+                List<SlideSnapshot> snapshots = new ArrayList<>(slides.size());
+                for (int index = 0; index < slides.size(); index++) {
+                    snapshots.add(snapshotAt(index, null));
+                }
+                current = PresentationVersion.of(title, snapshots, currentSlideNumber);
+            } else {
+                for (int index = 0; index < current.getSize(); index++) {
+                    SlideSnapshot previous = current.getSlide(index);
+                    SlideSnapshot snapshot = snapshotAt(index, previous);
+                    if (snapshot != previous) {
+                        current = current.withSlide(index, snapshot);
+                    }
+                }
+            }
+            if (current != version) {
+                PresentationVersion made = current;
+                write(() -> version = made);
+            }
+            return current;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copy a slide unless it did not change since the previous copy.
+     * Must be called with the write lock held.
+     */
+    private SlideSnapshot snapshotAt(int index, SlideSnapshot previous) {
+        if (slides instanceof LazySlideList) {
+            return ((LazySlideList) slides).snapshot(index, previous);
+        }
+        Slide slide = slides.get(index);
+        if (previous != null && previous.isLoaded()
+                && previous.getRevision() == slide.getRevision()) {
+            return previous;
+        }
+        return SlideSnapshot.of(slide);
+    }
+
+    /**
+     * Register a listener that is told about each change as it happens
+     * @param listener The listener
+     */
+    public void addPresentationListener(PresentationListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removePresentationListener(PresentationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get a Flow.Publisher of the change events of this presentation.
+     * Subscribers that do not keep up get merged or dropped events instead
+     * of slowing down changes; see PresentationEventPublisher.
+     * @return The publisher, created on first use
+     */
+    public synchronized Flow.Publisher<PresentationEvent> getEventPublisher() {
+        if (eventPublisher == null) {
+            eventPublisher = new PresentationEventPublisher(this);
+        }
+        return eventPublisher;
+    }
+
+    public void addEditListener(PresentationEditListener listener) {
+        addPresentationListener(listener);
+    }
+
+    public void removeEditListener(PresentationEditListener listener) {
+        removePresentationListener(listener);
+    }
+
+    private void fire(PresentationEvent event) {
+        for (PresentationListener listener : listeners) {
+            listener.presentationChanged(event);
+        }
+    }
+
+    /**
+     * Read the state without locking. The read is repeated under the read
+     * lock if a writer changed the state meanwhile, in which case the first
+     * result may be torn or the read may have failed.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = stateLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T value = reader.get();
+                if (stateLock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException ex) {
+                if (stateLock.validate(stamp)) {
+                    throw ex;
+                }
+            }
+        }
+        stamp = stateLock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Make the next version, if versions are kept. Called from write().
+     */
+    private void changeVersion(UnaryOperator<PresentationVersion> change) {
+        if (version != null) {
+            version = change.apply(version);
+        }
+    }
+
+    /**
+     * Change the state. Must be called with the write lock held, and must not
+     * call out to listeners or observers, which may read the state.
+     */
+    private void write(Runnable change) {
+        long stamp = stateLock.writeLock();
+        try {
+            change.run();
+        } finally {
+            stateLock.unlockWrite(stamp);
         }
     }
 
@@ -0,0 +1,59 @@
+package jabberpoint.model;
+
+/**
+ * Listener for structural edits of a presentation. Unlike an Observer,
+ * which is only told that something changed, a listener is told exactly
+ * which slide was inserted or removed, so it can record the edit.
+ * A replaced slide is reported as a removal followed by an insertion.
+ * Changes to the content of a slide are visible through Slide.getRevision().
+ */
+public interface PresentationEditListener extends PresentationListener {
+    @Override
+    default void presentationChanged(PresentationEvent event) {
+        Presentation presentation = event.getPresentation();
+        if (event instanceof PresentationEvent.TitleChanged) {
+            titleChanged(presentation, ((PresentationEvent.TitleChanged) event).getTitle());
+        } else if (event instanceof PresentationEvent.SlideAdded) {
+            PresentationEvent.SlideAdded added = (PresentationEvent.SlideAdded) event;
+            slideInserted(presentation, added.getIndex(), added.getSlide());
+        } else if (event instanceof PresentationEvent.SlideRemoved) {
+            PresentationEvent.SlideRemoved removed = (PresentationEvent.SlideRemoved) event;
+            slideRemoved(presentation, removed.getIndex(), removed.getSlide());
+        } else if (event instanceof PresentationEvent.SlideReplaced) {
+            PresentationEvent.SlideReplaced replaced = (PresentationEvent.SlideReplaced) event;
+            slideRemoved(presentation, replaced.getIndex(), replaced.getOldSlide());
+            slideInserted(presentation, replaced.getIndex(), replaced.getNewSlide());
+        } else if (event instanceof PresentationEvent.SlidesReplaced) {
+            slidesReplaced(presentation);
+        }
+    }
+
+    /**
+     * Called after the title of the presentation changed
+     * @param presentation The presentation
+     * @param title The new title
+     */
+    void titleChanged(Presentation presentation, String title);
+
+    /**
+     * Called after a slide was inserted
+     * @param presentation The presentation
+     * @param index The index of the new slide
+     * @param slide The new slide
+     */
+    void slideInserted(Presentation presentation, int index, Slide slide);
+
+    /**
+     * Called after a slide was removed
+     * @param presentation The presentation
+     * @param index The index the slide had
+     * @param slide The removed slide
+     */
+    void slideRemoved(Presentation presentation, int index, Slide slide);
+
+    /**
+     * Called after all slides were replaced at once, by clear(), setSlideSource() or replaceWith()
+     * @param presentation The presentation
+     */
+    void slidesReplaced(Presentation presentation);
+}
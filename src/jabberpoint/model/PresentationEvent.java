@@ -0,0 +1,232 @@
+package jabberpoint.model;
+
+/**
+ * A change to a presentation, sent to PresentationListeners. Each kind of
+ * change has its own subclass that tells exactly what changed, so a
+ * listener can update only the part of its state that is affected.
+ */
+public abstract class PresentationEvent {
+    private final Presentation presentation;
+
+    protected PresentationEvent(Presentation presentation) {
+        this.presentation = presentation;
+    }
+
+    public Presentation getPresentation() {
+        return presentation;
+    }
+
+    /**
+     * Check whether the event changes what the current slide looks like
+     * @param slideNumber The current slide number
+     * @return true if the current slide must be drawn again
+     */
+    public abstract boolean affectsSlide(int slideNumber);
+
+    /**
+     * The title of the presentation changed
+     */
+    public static final class TitleChanged extends PresentationEvent {
+        private final String title;
+
+        public TitleChanged(Presentation presentation, String title) {
+            super(presentation);
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return false;
+        }
+    }
+
+    /**
+     * Another slide became the current slide
+     */
+    public static final class NavigationChanged extends PresentationEvent {
+        private final int oldSlideNumber;
+        private final int newSlideNumber;
+
+        public NavigationChanged(Presentation presentation, int oldSlideNumber,
+                int newSlideNumber) {
+            super(presentation);
+            this.oldSlideNumber = oldSlideNumber;
+            this.newSlideNumber = newSlideNumber;
+        }
+
+        public int getOldSlideNumber() {
+            return oldSlideNumber;
+        }
+
+        public int getNewSlideNumber() {
+            return newSlideNumber;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return true;
+        }
+    }
+
+    /**
+     * A slide was inserted
+     */
+    public static final class SlideAdded extends PresentationEvent {
+        private final int index;
+        private final Slide slide;
+
+        public SlideAdded(Presentation presentation, int index, Slide slide) {
+            super(presentation);
+            this.index = index;
+            this.slide = slide;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Slide getSlide() {
+            return slide;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return index <= slideNumber;
+        }
+    }
+
+    /**
+     * A slide was removed
+     */
+    public static final class SlideRemoved extends PresentationEvent {
+        private final int index;
+        private final Slide slide;
+
+        public SlideRemoved(Presentation presentation, int index, Slide slide) {
+            super(presentation);
+            this.index = index;
+            this.slide = slide;
+        }
+
+        /**
+         * @return The index the slide had
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Slide getSlide() {
+            return slide;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return index <= slideNumber;
+        }
+    }
+
+    /**
+     * A slide was replaced by another one
+     */
+    public static final class SlideReplaced extends PresentationEvent {
+        private final int index;
+        private final Slide oldSlide;
+        private final Slide newSlide;
+
+        public SlideReplaced(Presentation presentation, int index, Slide oldSlide, Slide newSlide) {
+            super(presentation);
+            this.index = index;
+            this.oldSlide = oldSlide;
+            this.newSlide = newSlide;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Slide getOldSlide() {
+            return oldSlide;
+        }
+
+        public Slide getNewSlide() {
+            return newSlide;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return index == slideNumber;
+        }
+    }
+
+    /**
+     * The contents of a slide were edited in place, for example its title
+     */
+    public static final class SlideChanged extends PresentationEvent {
+        private final int index;
+
+        public SlideChanged(Presentation presentation, int index) {
+            super(presentation);
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return index == slideNumber;
+        }
+    }
+
+    /**
+     * An item was added to a slide
+     */
+    public static final class ItemAdded extends PresentationEvent {
+        private final int slideIndex;
+        private final int itemIndex;
+        private final SlideItem item;
+
+        public ItemAdded(Presentation presentation, int slideIndex, int itemIndex, SlideItem item) {
+            super(presentation);
+            this.slideIndex = slideIndex;
+            this.itemIndex = itemIndex;
+            this.item = item;
+        }
+
+        public int getSlideIndex() {
+            return slideIndex;
+        }
+
+        public int getItemIndex() {
+            return itemIndex;
+        }
+
+        public SlideItem getItem() {
+            return item;
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return slideIndex == slideNumber;
+        }
+    }
+
+    /**
+     * All slides were replaced at once, by clear(), setSlideSource() or replaceWith()
+     */
+    public static final class SlidesReplaced extends PresentationEvent {
+        public SlidesReplaced(Presentation presentation) {
+            super(presentation);
+        }
+
+        @Override
+        public boolean affectsSlide(int slideNumber) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package jabberpoint.model;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+/**
+ * Publishes the change events of a presentation as a Flow.Publisher, for
+ * consumers such as remote mirrors, loggers and recorders. Every subscriber
+ * has a bounded buffer and receives events on the executor, only as many as
+ * it requested. Publishing never waits for a subscriber:
+ * <ul>
+ * <li>a NavigationChanged event that follows another one in the buffer is
+ *     merged with it, so a subscriber that falls behind sees one jump;</li>
+ * <li>when the buffer is full, the buffered events are dropped and replaced
+ *     by a single SlidesReplaced event, which tells the subscriber to read
+ *     the whole presentation again.</li>
+ * </ul>
+ */
+public class PresentationEventPublisher
+        implements Flow.Publisher<PresentationEvent>, PresentationListener {
+    /** The number of events buffered for each subscriber */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private static final ExecutorService DELIVERY = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "JabberPoint events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Presentation presentation;
+    private final int bufferSize;
+    private final Executor executor;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Publish with the default buffer size on a shared pool of daemon threads
+     * @param presentation The presentation whose events are published
+     */
+    public PresentationEventPublisher(Presentation presentation) {
+        this(presentation, DEFAULT_BUFFER_SIZE, DELIVERY);
+    }
+
+    /**
+     * @param presentation The presentation whose events are published
+     * @param bufferSize The number of events kept for each subscriber
+     * @param executor Delivers the events to the subscribers
+     */
+    public PresentationEventPublisher(Presentation presentation, int bufferSize,
+            Executor executor) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.presentation = presentation;
+        this.bufferSize = bufferSize;
+        this.executor = executor;
+        presentation.addPresentationListener(this);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PresentationEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        EventSubscription subscription = new EventSubscription(subscriber);
+        if (!closed) {
+            subscriptions.add(subscription);
+        }
+        executor.execute(() -> {
+            subscriber.onSubscribe(subscription);
+            subscription.start(closed);
+        });
+    }
+
+    @Override
+    public void presentationChanged(PresentationEvent event) {
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stop publishing. Subscribers receive onComplete() after the events
+     * that are still buffered for them.
+     */
+    public void close() {
+        closed = true;
+        presentation.removePresentationListener(this);
+        for (EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super PresentationEvent> subscriber;
+        private final ArrayDeque<PresentationEvent> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean started;
+        private boolean draining;
+        private boolean completing;
+        private boolean done;
+        private Throwable error;
+
+        EventSubscription(Flow.Subscriber<? super PresentationEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(PresentationEvent event) {
+            synchronized (this) {
+                if (done || completing) {
+                    return;
+                }
+                PresentationEvent last = buffer.peekLast();
+                if (event instanceof PresentationEvent.NavigationChanged
+                        && last instanceof PresentationEvent.NavigationChanged) {
+                    buffer.pollLast();
+                    buffer.add(new PresentationEvent.NavigationChanged(presentation,
+                            ((PresentationEvent.NavigationChanged) last).getOldSlideNumber(),
+                            ((PresentationEvent.NavigationChanged) event).getNewSlideNumber()));
+                } else if (buffer.size() >= bufferSize) {
+                    buffer.clear();
+                    buffer.add(new PresentationEvent.SlidesReplaced(presentation));
+                } else {
+                    buffer.add(event);
+                }
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested " + n + " events");
+                    buffer.clear();
+                    completing = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                done = true;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Allow deliveries, which must not overlap with onSubscribe()
+         */
+        void start(boolean complete) {
+            synchronized (this) {
+                started = true;
+                completing |= complete;
+            }
+            scheduleDrain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (!started || draining || done) {
+                    return;
+                }
+                draining = true;
+            }
+            executor.execute(this::drain);
+        }
+
+        /**
+         * Deliver buffered events while the subscriber has demand. Only one
+         * drain runs at a time, so events arrive in order.
+         */
+        private void drain() {
+            while (true) {
+                PresentationEvent event;
+                boolean finish = false;
+                synchronized (this) {
+                    if (done) {
+                        draining = false;
+                        return;
+                    }
+                    if (demand > 0 && !buffer.isEmpty()) {
+                        event = buffer.poll();
+                        demand--;
+                    } else if (completing && (buffer.isEmpty() || error != null)) {
+                        event = null;
+                        finish = true;
+                        done = true;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                if (finish) {
+                    subscriptions.remove(this);
+                    if (error != null) {
+                        subscriber.onError(error);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException ex) {
+                    // A failing subscriber is cancelled, as Flow requires
+                    cancel();
+                    subscriber.onError(ex);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package jabberpoint.model;
+
+/**
+ * Listener for typed changes of a presentation. Listeners are called right
+ * after each change, also inside a batch; Observers are only notified once
+ * at the end of the batch.
+ */
+public interface PresentationListener {
+    /**
+     * Called after the presentation changed
+     * @param event What changed
+     */
+    void presentationChanged(PresentationEvent event);
+}
@@ -0,0 +1,172 @@
+package jabberpoint.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An unchangeable state of a presentation, as returned by
+ * Presentation.getVersion(). Every change to the presentation makes a new
+ * version that shares the unchanged slides with the previous one, so a
+ * version can be saved, exported or rendered on another thread without
+ * locking or copying, and old versions can be kept as a history at the cost
+ * of the slides that changed.
+ */
+public final class PresentationVersion {
+    private static final PresentationVersion EMPTY =
+            new PresentationVersion("", PersistentVector.empty(), 0);
+
+    private final String title;
+    private final PersistentVector<SlideSnapshot> slides;
+    private final int slideNumber;
+
+    private PresentationVersion(String title, PersistentVector<SlideSnapshot> slides,
+            int slideNumber) {
+        this.title = title;
+        this.slides = slides;
+        this.slideNumber = slideNumber;
+    }
+
+    public static PresentationVersion empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Make a version of copied slides
+     * @param title The title of the presentation
+     * @param slides The copies of the slides
+     * @param slideNumber The current slide number
+     * @return The version
+     */
+    static PresentationVersion of(String title, List<SlideSnapshot> slides, int slideNumber) {
+        return new PresentationVersion(title, PersistentVector.of(slides), slideNumber);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getSize() {
+        return slides.size();
+    }
+
+    public int getSlideNumber() {
+        return slideNumber;
+    }
+
+    public SlideSnapshot getSlide(int number) {
+        if (number < 0 || number >= slides.size()) {
+            return null;
+        }
+        return slides.get(number);
+    }
+
+    /**
+     * @return The slides of this version, which cannot be changed
+     */
+    public List<SlideSnapshot> getSlides() {
+        return slides;
+    }
+
+    public PresentationVersion withTitle(String title) {
+        return new PresentationVersion(title, slides, slideNumber);
+    }
+
+    public PresentationVersion withSlideNumber(int slideNumber) {
+        return new PresentationVersion(title, slides, slideNumber);
+    }
+
+    public PresentationVersion withSlide(int index, SlideSnapshot slide) {
+        return new PresentationVersion(title, slides.with(index, slide), slideNumber);
+    }
+
+    public PresentationVersion insertSlide(int index, SlideSnapshot slide) {
+        return new PresentationVersion(title, slides.plus(index, slide), slideNumber);
+    }
+
+    public PresentationVersion removeSlide(int index) {
+        return new PresentationVersion(title, slides.minus(index), slideNumber);
+    }
+
+    /**
+     * Create a presentation with the contents of this version, for code
+     * that works on a Presentation, such as the savers. If some slides
+     * were not loaded, the presentation loads all slides on demand.
+     * @return A new presentation without observers
+     */
+    public Presentation toPresentation() {
+        Presentation presentation = new Presentation();
+        presentation.batch(() -> {
+            presentation.setTitle(title);
+            if (isLoaded()) {
+                for (SlideSnapshot slide : slides) {
+                    presentation.addSlide(slide.toSlide());
+                }
+            } else {
+                presentation.setSlideSource(new VersionSlideSource(slides));
+            }
+            presentation.setSlideNumber(slideNumber);
+        });
+        return presentation;
+    }
+
+    /**
+     * Tell the sources of the slides that were not loaded that a file
+     * written from this version is about to replace a file. Must be called
+     * after newFile is written and before it is moved over file, so slides
+     * that are read from file on demand can still be read afterwards.
+     * @param file The file that is replaced
+     * @param newFile The file written from this version
+     * @throws IOException If a source cannot read the new file
+     */
+    public void fileReplaced(Path file, Path newFile) throws IOException {
+        Map<SlideSource, int[]> indices = new IdentityHashMap<>();
+        for (int index = 0; index < slides.size(); index++) {
+            SlideSnapshot slide = slides.get(index);
+            if (!slide.isLoaded()) {
+                int[] sourceIndices = indices.computeIfAbsent(slide.getSource(), source -> {
+                    int[] unknown = new int[slides.size()];
+                    Arrays.fill(unknown, -1);
+                    return unknown;
+                });
+                sourceIndices[index] = slide.getSourceIndex();
+            }
+        }
+        for (Map.Entry<SlideSource, int[]> entry : indices.entrySet()) {
+            entry.getKey().fileReplaced(file, newFile, entry.getValue());
+        }
+    }
+
+    private boolean isLoaded() {
+        for (SlideSnapshot slide : slides) {
+            if (!slide.isLoaded()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the slides of a version on demand
+     */
+    private static final class VersionSlideSource implements SlideSource {
+        private final List<SlideSnapshot> slides;
+
+        VersionSlideSource(List<SlideSnapshot> slides) {
+            this.slides = slides;
+        }
+
+        @Override
+        public int getSize() {
+            return slides.size();
+        }
+
+        @Override
+        public Slide loadSlide(int index) throws IOException {
+            return slides.get(index).makeSlide();
+        }
+    }
+}
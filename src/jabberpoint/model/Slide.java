@@ -4,6 +4,7 @@ import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.image.ImageObserver;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Slide {
@@ -12,13 +13,19 @@ public class Slide {
     
     private String title;
     private List<SlideItem> items;
+    private TextItem titleItem;
+    private volatile SlideLayout layout;
+    private volatile int modCount;
 
     public Slide() {
         items = new ArrayList<>();
+        titleItem = new TextItem(0, null);
     }
 
     public void append(SlideItem anItem) {
         items.add(anItem);
+        modCount++;
+        invalidateLayout();
     }
 
     public String getTitle() {
@@ -27,6 +34,23 @@ public class Slide {
 
     public void setTitle(String newTitle) {
         title = newTitle;
+        titleItem.setText(newTitle);
+        modCount++;
+        invalidateLayout();
+    }
+
+    /**
+     * Get a counter that changes whenever the title, the items or the
+     * content of an item of this slide changes
+     * @return The current revision
+     */
+    public int getRevision() {
+        // Combined in order, so that changes to different items cannot cancel out
+        int revision = modCount;
+        for (SlideItem item : items) {
+            revision = 31 * revision + item.getRevision();
+        }
+        return revision;
     }
 
     public void append(int level, String message) {
@@ -40,8 +64,11 @@ public class Slide {
         return items.get(number);
     }
 
+    /**
+     * @return The items of this slide, which cannot be changed through the list
+     */
     public List<SlideItem> getSlideItems() {
-        return items;
+        return Collections.unmodifiableList(items);
     }
 
     public int getSize() {
@@ -49,19 +76,32 @@ public class Slide {
     }
 
     public void draw(Graphics g, Rectangle area, ImageObserver view) {
-        float scale = getScale(area);
-        int y = area.y;
-        
-        SlideItem slideItem = new TextItem(0, getTitle());
-        Style style = Style.getStyle(slideItem.getLevel());
-        slideItem.draw(area.x, y, scale, g, style, view);
-        y += slideItem.getBoundingBox(g, view, scale, style).height;
-        
-        for (SlideItem item : items) {
-            style = Style.getStyle(item.getLevel());
-            item.draw(area.x, y, scale, g, style, view);
-            y += item.getBoundingBox(g, view, scale, style).height;
+        getLayout(g, area, view).paint(g, view);
+    }
+
+    /**
+     * Get the layout of this slide for the given area.
+     * The layout is cached until the slide changes or a different area is requested.
+     * @param g The graphics used for measuring
+     * @param area The area to lay the slide out in
+     * @param view The observer for images
+     * @return The layout of this slide
+     */
+    public SlideLayout getLayout(Graphics g, Rectangle area, ImageObserver view) {
+        SlideLayout current = layout;
+        if (current == null || !current.isValidFor(area, g)) {
+            current = SlideLayout.compute(titleItem, items, g, area, getScale(area), view);
+            layout = current;
         }
+        return current;
+    }
+
+    /**
+     * Discard the cached layout. Items report their own changes through their
+     * revision, so this is not needed after editing the slide.
+     */
+    public void invalidateLayout() {
+        layout = null;
     }
 
     private float getScale(Rectangle area) {
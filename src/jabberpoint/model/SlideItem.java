@@ -6,6 +6,7 @@ import java.awt.image.ImageObserver;
 
 public abstract class SlideItem {
     private int level = 0;
+    private volatile int revision = 0;
 
     public SlideItem(int lev) {
         level = lev;
@@ -19,6 +20,22 @@ public abstract class SlideItem {
         return level;
     }
 
+    /**
+     * Get a counter that changes whenever the size or content of this item changes.
+     * Layouts use it to detect that they have to be measured again.
+     * @return The current revision
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Record that the size or content of this item changed
+     */
+    protected synchronized void markChanged() {
+        revision++;
+    }
+
     public abstract Rectangle getBoundingBox(Graphics g, 
             ImageObserver observer, float scale, Style style);
 
@@ -0,0 +1,176 @@
+package jabberpoint.model;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.image.ImageObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable result of laying out a slide in a given area.
+ * The title and every item are measured exactly once; painting replays
+ * the recorded positions without measuring again.
+ */
+public final class SlideLayout {
+    private final Rectangle area;
+    private final FontRenderContext frc;
+    private final float scale;
+    private final Entry title;
+    private final List<Entry> items;
+
+    private SlideLayout(Rectangle area, FontRenderContext frc, float scale,
+            Entry title, List<Entry> items) {
+        this.area = area;
+        this.frc = frc;
+        this.scale = scale;
+        this.title = title;
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Measure the title and items of a slide
+     * @param titleItem The item used to draw the slide title
+     * @param slideItems The items of the slide, in drawing order
+     * @param g The graphics used for measuring
+     * @param area The area to lay the slide out in
+     * @param scale The scale to apply
+     * @param view The observer for images
+     * @return The computed layout
+     */
+    static SlideLayout compute(SlideItem titleItem, List<SlideItem> slideItems,
+            Graphics g, Rectangle area, float scale, ImageObserver view) {
+        int y = area.y;
+        Entry titleEntry = measure(titleItem, g, area.x, y, scale, view);
+        y += titleEntry.getBounds().height;
+
+        List<Entry> entries = new ArrayList<>(slideItems.size());
+        for (SlideItem item : slideItems) {
+            Entry entry = measure(item, g, area.x, y, scale, view);
+            entries.add(entry);
+            y += entry.getBounds().height;
+        }
+        return new SlideLayout(new Rectangle(area), fontRenderContext(g), scale, titleEntry,
+                entries);
+    }
+
+    private static Entry measure(SlideItem item, Graphics g, int x, int y, float scale,
+            ImageObserver view) {
+        Style style = Style.getStyle(item.getLevel());
+        int revision = item.getRevision();
+        Rectangle box = item.getBoundingBox(g, view, scale, style);
+        return new Entry(item, style, revision, x, y,
+                new Rectangle(x + box.x, y + box.y, box.width, box.height));
+    }
+
+    static FontRenderContext fontRenderContext(Graphics g) {
+        return g instanceof Graphics2D ? ((Graphics2D) g).getFontRenderContext() : null;
+    }
+
+    /**
+     * Check whether this layout was computed for the given area and graphics
+     * @param otherArea The area to check
+     * @param g The graphics that will be used for painting
+     * @return true if the layout can be reused
+     */
+    boolean isValidFor(Rectangle otherArea, Graphics g) {
+        if (!area.equals(otherArea) || !Objects.equals(frc, fontRenderContext(g))
+                || title.isChanged()) {
+            return false;
+        }
+        for (Entry entry : items) {
+            if (entry.isChanged()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Paint the slide by replaying the recorded positions
+     * @param g The graphics to paint on
+     * @param view The observer for images
+     */
+    public void paint(Graphics g, ImageObserver view) {
+        title.paint(g, scale, view);
+        for (Entry entry : items) {
+            entry.paint(g, scale, view);
+        }
+    }
+
+    public Rectangle getArea() {
+        return new Rectangle(area);
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public Entry getTitle() {
+        return title;
+    }
+
+    public List<Entry> getItems() {
+        return items;
+    }
+
+    /**
+     * Position of a single slide item within a layout
+     */
+    public static final class Entry {
+        private final SlideItem item;
+        private final Style style;
+        private final int revision;
+        private final int x;
+        private final int y;
+        private final Rectangle bounds;
+
+        Entry(SlideItem item, Style style, int revision, int x, int y, Rectangle bounds) {
+            this.item = item;
+            this.style = style;
+            this.revision = revision;
+            this.x = x;
+            this.y = y;
+            this.bounds = bounds;
+        }
+
+        private boolean isChanged() {
+            return item.getRevision() != revision;
+        }
+
+        private void paint(Graphics g, float scale, ImageObserver view) {
+            item.draw(x, y, scale, g, style, view);
+        }
+
+        public SlideItem getItem() {
+            return item;
+        }
+
+        /**
+         * Get the horizontal origin the item is drawn at
+         * @return The x coordinate
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * Get the vertical origin the item is drawn at
+         * @return The y coordinate
+         */
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * Get the space the item occupies on the slide
+         * @return A copy of the bounds of the item
+         */
+        public Rectangle getBounds() {
+            return new Rectangle(bounds);
+        }
+    }
+}
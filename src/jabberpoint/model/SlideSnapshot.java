@@ -0,0 +1,183 @@
+package jabberpoint.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An unchangeable copy of a slide, part of a PresentationVersion.
+ * Text items and groups are copied, because they can be edited; image
+ * items only depend on their image name, so they are shared with the slide.
+ * The copied items must not be changed.
+ * <p>
+ * A slide of a SlideSource that was not loaded yet is not copied: the
+ * snapshot loads it from the source when its content is first read and
+ * keeps it only as long as memory allows, so taking a version does not
+ * load every slide or keep it in memory.
+ * A copy of a FailedSlide is again a FailedSlide.
+ */
+public final class SlideSnapshot {
+    private final String title;
+    private final List<SlideItem> items;
+    private final int revision;
+    // Set for a copy of a FailedSlide
+    private final Exception error;
+    // Set instead of the fields above for a slide that was not loaded
+    private final SlideSource source;
+    private final int sourceIndex;
+    // The content loaded from the source, which the garbage collector may clear
+    private volatile SoftReference<SlideSnapshot> loaded = new SoftReference<>(null);
+
+    private SlideSnapshot(String title, List<SlideItem> items, int revision, Exception error) {
+        this.title = title;
+        this.items = Collections.unmodifiableList(items);
+        this.revision = revision;
+        this.error = error;
+        this.source = null;
+        this.sourceIndex = -1;
+    }
+
+    private SlideSnapshot(SlideSource source, int sourceIndex) {
+        this.title = null;
+        this.items = null;
+        this.revision = -1;
+        this.error = null;
+        this.source = source;
+        this.sourceIndex = sourceIndex;
+    }
+
+    /**
+     * Take a copy of a slide
+     * @param slide The slide to copy
+     * @return The copy
+     */
+    public static SlideSnapshot of(Slide slide) {
+        List<SlideItem> items = new ArrayList<>(slide.getSize());
+        for (SlideItem item : slide.getSlideItems()) {
+            items.add(copy(item));
+        }
+        Exception error = slide instanceof FailedSlide ? ((FailedSlide) slide).getError() : null;
+        return new SlideSnapshot(slide.getTitle(), items, slide.getRevision(), error);
+    }
+
+    /**
+     * Refer to a slide of a source without loading it. The source must
+     * return the same content for the slide every time.
+     * @param source The source
+     * @param sourceIndex The index of the slide in the source
+     * @return The snapshot
+     */
+    static SlideSnapshot of(SlideSource source, int sourceIndex) {
+        return new SlideSnapshot(source, sourceIndex);
+    }
+
+    /**
+     * @return The source of a slide that was not loaded, else null
+     */
+    SlideSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return The index of the slide in its source, or -1 if it was loaded
+     */
+    int getSourceIndex() {
+        return sourceIndex;
+    }
+
+    public String getTitle() {
+        return content().title;
+    }
+
+    /**
+     * @return The revision the slide had when it was copied, or -1 if it
+     *         was not loaded
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return false if the slide is read from its source when needed
+     */
+    public boolean isLoaded() {
+        return source == null;
+    }
+
+    public int getSize() {
+        return content().items.size();
+    }
+
+    public SlideItem getSlideItem(int number) {
+        List<SlideItem> content = content().items;
+        if (number < 0 || number >= content.size()) {
+            return null;
+        }
+        return content.get(number);
+    }
+
+    public List<SlideItem> getSlideItems() {
+        return content().items;
+    }
+
+    /**
+     * Create a slide with the contents of this snapshot, which can be
+     * changed without changing the snapshot
+     * @return A new slide
+     * @throws UncheckedIOException If the slide cannot be loaded from its source
+     */
+    public Slide toSlide() {
+        try {
+            return makeSlide();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Create a slide with the contents of this snapshot
+     * @return A new slide
+     * @throws IOException If the slide cannot be loaded from its source
+     */
+    Slide makeSlide() throws IOException {
+        if (source != null) {
+            return source.loadSlide(sourceIndex);
+        }
+        Slide slide = error != null ? new FailedSlide(title, error) : new Slide();
+        slide.setTitle(title);
+        for (SlideItem item : items) {
+            slide.append(copy(item));
+        }
+        return slide;
+    }
+
+    private SlideSnapshot content() {
+        if (source == null) {
+            return this;
+        }
+        SlideSnapshot content = loaded.get();
+        if (content == null) {
+            content = of(toSlide());
+            loaded = new SoftReference<>(content);
+        }
+        return content;
+    }
+
+    private static SlideItem copy(SlideItem item) {
+        if (item instanceof TextItem) {
+            return new TextItem(item.getLevel(), ((TextItem) item).getText());
+        }
+        if (item instanceof CompositeSlideItem) {
+            CompositeSlideItem group = (CompositeSlideItem) item;
+            CompositeSlideItem copy = new CompositeSlideItem(group.getLevel(), group.getName());
+            for (int index = 0; index < group.getSize(); index++) {
+                copy.add(copy(group.getChild(index)));
+            }
+            return copy;
+        }
+        return item;
+    }
+}
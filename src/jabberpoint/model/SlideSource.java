@@ -0,0 +1,39 @@
+package jabberpoint.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Source of slides that are loaded on demand instead of all at once.
+ * Used by Presentation.setSlideSource() for presentations that are too
+ * large to keep in memory.
+ */
+public interface SlideSource {
+    /**
+     * Get the number of slides in the source
+     * @return The number of slides
+     */
+    int getSize();
+
+    /**
+     * Load a slide. Each call creates a new Slide object.
+     * @param index The index of the slide in the source
+     * @return The slide
+     * @throws IOException If the slide cannot be read
+     */
+    Slide loadSlide(int index) throws IOException;
+
+    /**
+     * Called when a file was written from slides of this source and is about
+     * to replace a file. A source that reads its slides from the replaced
+     * file must read them from the new content afterwards. The default does
+     * nothing.
+     * @param file The file that is replaced
+     * @param newFile The written file, which is moved over file next
+     * @param sourceIndices For each slide of the new file, the index of the
+     *        slide in this source, or -1 if it did not come from this source
+     * @throws IOException If the new file cannot be read
+     */
+    default void fileReplaced(Path file, Path newFile, int[] sourceIndices) throws IOException {
+    }
+}
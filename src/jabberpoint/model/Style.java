@@ -46,9 +46,9 @@ public class Style {
     public int indent;
     public int leading;
     public Color color;
-    private Font font;
-    private int fontSize;
-    private String fontName;
+    private final Font font;
+    private final int fontSize;
+    private final String fontName;
     
     /**
      * Create a new style
@@ -84,6 +84,14 @@ public class Style {
         return font.deriveFont(fontSize * scale);
     }
     
+    /**
+     * Get the font at its own size, which cannot change
+     * @return The font
+     */
+    Font getBaseFont() {
+        return font;
+    }
+    
     /**
      * Get the font size
      * @return The font size
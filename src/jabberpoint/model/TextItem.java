@@ -1,6 +1,7 @@
 package jabberpoint.model;
 
 import java.awt.Rectangle;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
@@ -12,12 +13,32 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.ImageObserver;
 import java.text.AttributedString;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class TextItem extends SlideItem {
-    private String text;
+    private volatile String text;
     private static final String EMPTYTEXT = "No Text Given";
+    
+    // Scales are rounded to this many steps per unit before being used as a cache key
+    private static final float SCALE_QUANTUM = 1000f;
+    private static final int MAX_CACHED_LAYOUTS = 4;
+
+    private final Map<LayoutKey, List<TextLayout>> layoutCache =
+            new LinkedHashMap<LayoutKey, List<TextLayout>>(MAX_CACHED_LAYOUTS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LayoutKey, List<TextLayout>> eldest) {
+                    return size() > MAX_CACHED_LAYOUTS;
+                }
+            };
+    private long layoutCacheHits;
+    private long layoutCacheMisses;
 
     public TextItem(int level, String string) {
         super(level);
@@ -32,6 +53,39 @@ public class TextItem extends SlideItem {
         return text == null ? "" : text;
     }
 
+    /**
+     * Change the text of this item. Cached layouts are discarded.
+     * @param string The new text
+     */
+    public synchronized void setText(String string) {
+        text = string;
+        clearLayoutCache();
+        markChanged();
+    }
+
+    /**
+     * Discard all cached text layouts
+     */
+    public synchronized void clearLayoutCache() {
+        layoutCache.clear();
+    }
+
+    /**
+     * Get the number of layout requests served from the cache
+     * @return The number of cache hits
+     */
+    public synchronized long getLayoutCacheHits() {
+        return layoutCacheHits;
+    }
+
+    /**
+     * Get the number of layout requests that required line breaking
+     * @return The number of cache misses
+     */
+    public synchronized long getLayoutCacheMisses() {
+        return layoutCacheMisses;
+    }
+
     public AttributedString getAttributedString(Style style, float scale) {
         AttributedString attrStr = new AttributedString(getText());
         attrStr.addAttribute(TextAttribute.FONT, style.getFont(scale), 0, text.length());
@@ -73,11 +127,27 @@ public class TextItem extends SlideItem {
         }
     }
 
-    private List<TextLayout> getLayouts(Graphics g, Style s, float scale) {
+    private synchronized List<TextLayout> getLayouts(Graphics g, Style s, float scale) {
+        FontRenderContext frc = ((Graphics2D) g).getFontRenderContext();
+        float quantizedScale = Math.round(scale * SCALE_QUANTUM) / SCALE_QUANTUM;
+        LayoutKey key = new LayoutKey(s.getBaseFont(), s.indent, quantizedScale, frc);
+        List<TextLayout> layouts = layoutCache.get(key);
+        if (layouts != null) {
+            layoutCacheHits++;
+            return layouts;
+        }
+        layoutCacheMisses++;
+        layouts = Collections.unmodifiableList(createLayouts(frc, s, quantizedScale));
+        layoutCache.put(key, layouts);
+        return layouts;
+    }
+
+    private List<TextLayout> createLayouts(FontRenderContext frc, Style s, float scale) {
         List<TextLayout> layouts = new ArrayList<TextLayout>();
+        if (getText().isEmpty()) {
+            return layouts;
+        }
         AttributedString attrStr = getAttributedString(s, scale);
-        Graphics2D g2d = (Graphics2D) g;
-        FontRenderContext frc = g2d.getFontRenderContext();
         LineBreakMeasurer measurer = new LineBreakMeasurer(attrStr.getIterator(), frc);
         float wrappingWidth = (Slide.WIDTH - s.indent) * scale;
         while (measurer.getPosition() < getText().length()) {
@@ -90,4 +160,38 @@ public class TextItem extends SlideItem {
     public String toString() {
         return "TextItem[" + getLevel()+","+getText()+"]";
     }
+
+    /**
+     * Cache key for the layouts of this item. It holds the values of the style
+     * that the line breaks depend on, rather than the style, whose indent can
+     * be changed.
+     */
+    private static final class LayoutKey {
+        private final Font font;
+        private final int indent;
+        private final float scale;
+        private final FontRenderContext frc;
+
+        LayoutKey(Font font, int indent, float scale, FontRenderContext frc) {
+            this.font = font;
+            this.indent = indent;
+            this.scale = scale;
+            this.frc = frc;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey key = (LayoutKey) other;
+            return font.equals(key.font) && indent == key.indent
+                    && Float.compare(scale, key.scale) == 0 && Objects.equals(frc, key.frc);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, indent, scale, frc);
+        }
+    }
 }
@@ -0,0 +1,210 @@
+package jabberpoint.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.ImageCache;
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+
+/**
+ * Loads and saves presentations as a single .jpz file: a zip archive that
+ * holds the presentation in the binary or XML format together with all of
+ * its images. Images are not extracted when the archive is opened; each one
+ * is streamed from the archive the first time its BitmapItem needs it.
+ * The archive is opened once through the ImageCache and stays open while
+ * its images are in use; it is closed once the presentation is replaced
+ * and its images are garbage collected.
+ */
+public class ArchiveAccessor implements PresentationLoader, PresentationSaver {
+    /** The extension of presentation archives */
+    public static final String EXTENSION = ".jpz";
+
+    static final String BINARY_ENTRY = "presentation" + BinaryAccessor.EXTENSION;
+    static final String XML_ENTRY = "presentation.xml";
+    private static final String IMAGE_DIRECTORY = "img/";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected static final String FILE = "File ";
+    protected static final String NOTFOUND = " not found";
+
+    private final int cacheSize;
+
+    public ArchiveAccessor() {
+        this(Presentation.DEFAULT_SLIDE_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The number of decoded slides to keep in memory
+     */
+    public ArchiveAccessor(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Check whether a file name has the archive extension
+     * @param filename The file name
+     * @return true if the file should be read with this accessor
+     */
+    public static boolean isArchiveFile(String filename) {
+        return filename.toLowerCase().endsWith(EXTENSION);
+    }
+
+    @Override
+    public void loadPresentation(Presentation presentation, String filename) throws IOException {
+        ImageCache.Archive archive = ImageCache.getInstance().openArchive(new File(filename));
+        String modelName = archive.contains(BINARY_ENTRY) ? BINARY_ENTRY : XML_ENTRY;
+        if (!archive.contains(modelName)) {
+            throw new IOException("No presentation found in " + filename);
+        }
+        byte[] model;
+        try (InputStream in = archive.openStream(modelName)) {
+            model = in.readAllBytes();
+        }
+        // The image handles share the open archive
+        ImageResolver resolver = name -> archive.handle(findEntry(archive, name));
+        if (modelName.equals(BINARY_ENTRY)) {
+            new BinaryAccessor(cacheSize, resolver).loadPresentation(presentation,
+                    ByteBuffer.wrap(model), filename + "!/" + BINARY_ENTRY);
+        } else {
+            new StreamingXMLLoader(resolver).loadPresentation(presentation,
+                    new ByteArrayInputStream(model));
+        }
+    }
+
+    /**
+     * Get a resolver for images that refer to an archive, for example the
+     * images of edits that are replayed on top of it. Images that are not
+     * in the archive, such as images added after it was written, are read
+     * from their files.
+     * @param filename The archive file
+     * @return The resolver
+     * @throws IOException If the archive cannot be opened
+     */
+    static ImageResolver imageResolver(String filename) throws IOException {
+        ImageCache.Archive archive = ImageCache.getInstance().openArchive(new File(filename));
+        return name -> {
+            String entry = findEntry(archive, name);
+            return archive.contains(entry)
+                    ? archive.handle(entry) : ImageResolver.FILES.resolve(name);
+        };
+    }
+
+    /**
+     * Find the entry of an image, also in archives written before out of
+     * tree images got a unique entry name
+     */
+    private static String findEntry(ImageCache.Archive archive, String imageName) {
+        String name = entryName(imageName);
+        if (!archive.contains(name)) {
+            String legacyName = IMAGE_DIRECTORY + fileName(imageName);
+            if (archive.contains(legacyName)) {
+                return legacyName;
+            }
+        }
+        return name;
+    }
+
+    @Override
+    public void savePresentation(Presentation presentation, String filename) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE))) {
+            out.putNextEntry(new ZipEntry(BINARY_ENTRY));
+            new BinaryAccessor().writePresentation(presentation, out);
+            out.closeEntry();
+
+            Set<String> written = new HashSet<>();
+            for (int slideNumber = 0; slideNumber < presentation.getSize(); slideNumber++) {
+                Slide slide = PresentationSaver.getSlideToSave(presentation, slideNumber);
+                for (int itemNumber = 0; itemNumber < slide.getSize(); itemNumber++) {
+                    writeImages(out, slide.getSlideItem(itemNumber), written);
+                }
+            }
+        }
+    }
+
+    private static void writeImages(ZipOutputStream out, SlideItem item, Set<String> written)
+            throws IOException {
+        if (item instanceof CompositeSlideItem) {
+            CompositeSlideItem group = (CompositeSlideItem) item;
+            for (int index = 0; index < group.getSize(); index++) {
+                writeImages(out, group.getChild(index), written);
+            }
+            return;
+        }
+        if (!(item instanceof BitmapItem) || ((BitmapItem) item).getName() == null) {
+            return;
+        }
+        BitmapItem bitmap = (BitmapItem) item;
+        String name = entryName(bitmap.getName());
+        if (!written.add(name)) {
+            return;
+        }
+        ImageCache.Handle handle = bitmap.getImageHandle();
+        if (handle == null || !handle.exists()) {
+            // Saving without it would lose the image for good
+            throw new IOException(FILE + bitmap.getName() + NOTFOUND);
+        }
+        byte[] bytes;
+        try (InputStream in = handle.openStream()) {
+            bytes = in.readAllBytes();
+        }
+        // Image formats are already compressed, so store them as they are
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    /**
+     * Get the name of the archive entry that holds an image. Names that
+     * point outside the archive are stored under img/ by their file name,
+     * followed by a checksum of the full name so that images with the same
+     * file name in different directories do not overwrite each other.
+     * @param imageName The name of the image, as returned by BitmapItem.getName()
+     * @return The entry name
+     */
+    static String entryName(String imageName) {
+        String name = imageName.replace('\\', '/');
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        if (name.startsWith("/") || name.contains(":") || name.equals("..")
+                || name.startsWith("../") || name.contains("/../") || name.endsWith("/..")) {
+            CRC32 crc = new CRC32();
+            crc.update(name.getBytes(StandardCharsets.UTF_8));
+            String file = fileName(name);
+            int dot = file.lastIndexOf('.');
+            String base = dot > 0 ? file.substring(0, dot) : file;
+            String extension = dot > 0 ? file.substring(dot) : "";
+            name = IMAGE_DIRECTORY + base + "-" + Long.toHexString(crc.getValue()) + extension;
+        }
+        return name;
+    }
+
+    private static String fileName(String imageName) {
+        String name = imageName.replace('\\', '/');
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,210 @@
+package jabberpoint.util;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEditListener;
+import jabberpoint.model.PresentationObserver;
+import jabberpoint.model.Slide;
+
+/**
+ * Saves a presentation automatically after it was edited. A burst of edits
+ * results in one save once no edit was made for a quiet period, but a
+ * change is never left unsaved for longer than a maximum delay, even while
+ * edits keep coming. Notifications that do not change the presentation,
+ * such as moving to another slide, do not cause a save.
+ * <p>
+ * The snapshot of the presentation is taken on the model thread, which is
+ * the Swing event thread by default; the file is written by a
+ * PresentationSaveService.
+ */
+public class AutosaveScheduler
+        implements PresentationObserver, PresentationEditListener, Closeable {
+    /** The time without edits in milliseconds after which the presentation is saved */
+    public static final long DEFAULT_QUIET_MILLIS = 2000;
+    /** The longest time in milliseconds an edit stays unsaved */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30000;
+
+    private static final String AUTOSAVEERR = "Autosave failed: ";
+
+    private static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "JabberPoint autosave");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Presentation presentation;
+    private final String filename;
+    private final PresentationSaveService saveService;
+    private final long quietMillis;
+    private final long maxDelayMillis;
+    private final Executor modelExecutor;
+    // Revision of each slide when it was last seen as the current slide
+    private final Map<Slide, Integer> revisions = new WeakHashMap<>();
+    private boolean dirty;
+    private long firstChangeMillis;
+    private ScheduledFuture<?> pending;
+    private long saveCount;
+    private boolean closed;
+
+    /**
+     * Autosave with the default delays, taking snapshots on the Swing event thread
+     * @param presentation The presentation to save
+     * @param filename The file to save to
+     * @param saveService The service that writes the file
+     */
+    public AutosaveScheduler(Presentation presentation, String filename,
+            PresentationSaveService saveService) {
+        this(presentation, filename, saveService, DEFAULT_QUIET_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param presentation The presentation to save
+     * @param filename The file to save to
+     * @param saveService The service that writes the file
+     * @param quietMillis The time without edits after which the presentation is saved
+     * @param maxDelayMillis The longest time an edit stays unsaved
+     * @param modelExecutor Runs tasks on the thread that edits the presentation
+     */
+    public AutosaveScheduler(Presentation presentation, String filename,
+            PresentationSaveService saveService, long quietMillis, long maxDelayMillis,
+            Executor modelExecutor) {
+        this.presentation = presentation;
+        this.filename = filename;
+        this.saveService = saveService;
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.modelExecutor = modelExecutor;
+        Slide current = presentation.getCurrentSlide();
+        if (current != null) {
+            revisions.put(current, current.getRevision());
+        }
+        presentation.addEditListener(this);
+        presentation.addObserver(this);
+    }
+
+    @Override
+    public void update(Presentation presentation, Slide slide) {
+        if (slide == null) {
+            return;
+        }
+        Integer seen = revisions.put(slide, slide.getRevision());
+        if (seen != null && seen != slide.getRevision()) {
+            changed();
+        }
+    }
+
+    @Override
+    public void titleChanged(Presentation presentation, String title) {
+        changed();
+    }
+
+    @Override
+    public void slideInserted(Presentation presentation, int index, Slide slide) {
+        revisions.put(slide, slide.getRevision());
+        changed();
+    }
+
+    @Override
+    public void slideRemoved(Presentation presentation, int index, Slide slide) {
+        changed();
+    }
+
+    @Override
+    public void slidesReplaced(Presentation presentation) {
+        revisions.clear();
+        changed();
+    }
+
+    /**
+     * Record an edit and move the save to the end of the quiet period,
+     * but no later than the maximum delay after the first unsaved edit
+     */
+    private synchronized void changed() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!dirty) {
+            dirty = true;
+            firstChangeMillis = now;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        long delay = Math.max(0, Math.min(quietMillis, firstChangeMillis + maxDelayMillis - now));
+        pending = TIMER.schedule(() -> modelExecutor.execute(this::saveIfChanged), delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Save now if anything changed since the last save. Must be called on
+     * the thread that edits the presentation.
+     * @return A future that completes when the file is written, or null if
+     *         nothing had to be saved
+     */
+    public CompletableFuture<Path> saveIfChanged() {
+        synchronized (this) {
+            if (!dirty || closed) {
+                return null;
+            }
+            dirty = false;
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+            saveCount++;
+        }
+        return saveService.save(presentation, filename).whenComplete((path, error) -> {
+            if (error != null) {
+                System.err.println(AUTOSAVEERR + error.getMessage());
+                // Try again with the next edit instead of retrying in a loop
+                synchronized (this) {
+                    if (!dirty) {
+                        dirty = true;
+                        firstChangeMillis = System.currentTimeMillis();
+                    }
+                }
+            }
+        });
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    public synchronized long getSaveCount() {
+        return saveCount;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Stop autosaving. Unsaved edits are not written.
+     */
+    @Override
+    public void close() {
+        presentation.removeObserver(this);
+        presentation.removeEditListener(this);
+        synchronized (this) {
+            closed = true;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+}
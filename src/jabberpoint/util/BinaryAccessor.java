@@ -0,0 +1,352 @@
+package jabberpoint.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.SlideSource;
+import jabberpoint.model.TextItem;
+
+/**
+ * Loads and saves presentations in the binary .jpb format.
+ * <p>
+ * A file starts with a fixed header, followed by a table with the offset
+ * of every slide record, the slide records and a table of UTF-8 strings.
+ * Titles, texts and image file names are stored once in the string table
+ * and referred to by index. Loading maps the file into memory and reads
+ * only the header; a slide record and its strings are decoded when the
+ * presentation first asks for the slide. All numbers are big-endian ints.
+ * <pre>
+ * header:  magic, version, title string, slide count, slide table offset,
+ *          string count, string table offset
+ * slides:  title string, item count, items
+ * item:    kind, level, string (text, image name or group name)
+ *          [child count, children]   for groups only
+ * strings: (offset, byte length) per string, then the bytes
+ * </pre>
+ */
+public class BinaryAccessor implements PresentationLoader, PresentationSaver {
+    /** The extension of binary presentation files */
+    public static final String EXTENSION = ".jpb";
+
+    static final int MAGIC = 0x4A504200; // "JPB\0"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 7 * Integer.BYTES;
+
+    private static final int KIND_TEXT = 0;
+    private static final int KIND_IMAGE = 1;
+    private static final int KIND_GROUP = 2;
+    private static final int NO_STRING = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected static final String UNKNOWNTYPE = "Unknown Element type";
+
+    private final int cacheSize;
+    private final ImageResolver imageResolver;
+
+    public BinaryAccessor() {
+        this(Presentation.DEFAULT_SLIDE_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The number of decoded slides to keep in memory
+     */
+    public BinaryAccessor(int cacheSize) {
+        this(cacheSize, ImageResolver.FILES);
+    }
+
+    /**
+     * @param cacheSize The number of decoded slides to keep in memory
+     * @param imageResolver Finds the images of image items
+     */
+    public BinaryAccessor(int cacheSize, ImageResolver imageResolver) {
+        this.cacheSize = cacheSize;
+        this.imageResolver = imageResolver;
+    }
+
+    /**
+     * Check whether a file name has the binary presentation extension
+     * @param filename The file name
+     * @return true if the file should be read with this accessor
+     */
+    public static boolean isBinaryFile(String filename) {
+        return filename.toLowerCase().endsWith(EXTENSION);
+    }
+
+    @Override
+    public void loadPresentation(Presentation presentation, String filename) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + filename);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        loadPresentation(presentation, buffer, filename);
+    }
+
+    /**
+     * Load a presentation from a buffer holding the contents of a .jpb file.
+     * Slides are decoded from the buffer when they are first needed.
+     * @param presentation The presentation to load into
+     * @param buffer The contents of the file
+     * @param name The name of the file, for error messages
+     * @throws IOException If the buffer does not hold a valid presentation
+     */
+    public void loadPresentation(Presentation presentation, ByteBuffer buffer, String name)
+            throws IOException {
+        BinarySlideSource source = new BinarySlideSource(buffer, name, imageResolver);
+        String title;
+        try {
+            title = source.getString(source.titleString);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+            throw new IOException("Corrupt binary presentation: " + name, ex);
+        }
+        if (title != null) {
+            presentation.setTitle(title);
+        }
+        presentation.setSlideSource(source, cacheSize);
+    }
+
+    @Override
+    public void savePresentation(Presentation presentation, String filename) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename),
+                BUFFER_SIZE)) {
+            writePresentation(presentation, out);
+        }
+    }
+
+    /**
+     * Write a presentation in the binary format
+     * @param presentation The presentation to write
+     * @param stream The stream to write to, which is not closed
+     * @throws IOException If writing fails
+     */
+    public void writePresentation(Presentation presentation, OutputStream stream)
+            throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(records);
+        int[] slideOffsets = new int[presentation.getSize()];
+        for (int slideNumber = 0; slideNumber < slideOffsets.length; slideNumber++) {
+            Slide slide = PresentationSaver.getSlideToSave(presentation, slideNumber);
+            slideOffsets[slideNumber] = recordOut.size();
+            recordOut.writeInt(intern(strings, slide.getTitle()));
+            List<SlideItem> items = new ArrayList<>();
+            for (int itemNumber = 0; itemNumber < slide.getSize(); itemNumber++) {
+                SlideItem item = slide.getSlideItem(itemNumber);
+                if (isSupported(item)) {
+                    items.add(item);
+                } else {
+                    System.err.println(UNKNOWNTYPE);
+                }
+            }
+            writeItems(recordOut, strings, items);
+        }
+        int titleString = intern(strings, presentation.getTitle());
+
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        for (String string : strings.keySet()) {
+            encoded.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        int slideTableOffset = HEADER_SIZE;
+        int recordsOffset = slideTableOffset + slideOffsets.length * Integer.BYTES;
+        int stringTableOffset = recordsOffset + records.size();
+        int stringDataOffset = stringTableOffset + encoded.size() * 2 * Integer.BYTES;
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(titleString);
+        out.writeInt(slideOffsets.length);
+        out.writeInt(slideTableOffset);
+        out.writeInt(encoded.size());
+        out.writeInt(stringTableOffset);
+        for (int offset : slideOffsets) {
+            out.writeInt(recordsOffset + offset);
+        }
+        records.writeTo(out);
+        int offset = stringDataOffset;
+        for (byte[] bytes : encoded) {
+            out.writeInt(offset);
+            out.writeInt(bytes.length);
+            offset += bytes.length;
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+        out.flush();
+    }
+
+    private static boolean isSupported(SlideItem item) {
+        return item instanceof TextItem || item instanceof BitmapItem
+                || item instanceof CompositeSlideItem;
+    }
+
+    private static void writeItems(DataOutputStream out, Map<String, Integer> strings,
+            List<SlideItem> items) throws IOException {
+        out.writeInt(items.size());
+        for (SlideItem item : items) {
+            if (item instanceof TextItem) {
+                String text = ((TextItem) item).getText();
+                writeItem(out, KIND_TEXT, item.getLevel(), intern(strings, text));
+            } else if (item instanceof BitmapItem) {
+                String name = ((BitmapItem) item).getName();
+                writeItem(out, KIND_IMAGE, item.getLevel(), intern(strings, name));
+            } else {
+                CompositeSlideItem group = (CompositeSlideItem) item;
+                writeItem(out, KIND_GROUP, item.getLevel(), intern(strings, group.getName()));
+                List<SlideItem> children = new ArrayList<>();
+                for (int index = 0; index < group.getSize(); index++) {
+                    if (isSupported(group.getChild(index))) {
+                        children.add(group.getChild(index));
+                    }
+                }
+                writeItems(out, strings, children);
+            }
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, int kind, int level, int string)
+            throws IOException {
+        out.writeInt(kind);
+        out.writeInt(level);
+        out.writeInt(string);
+    }
+
+    private static int intern(Map<String, Integer> strings, String string) {
+        if (string == null) {
+            return NO_STRING;
+        }
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Decodes slides from the mapped file
+     */
+    private static final class BinarySlideSource implements SlideSource {
+        private final ByteBuffer buffer;
+        private final String filename;
+        private final ImageResolver imageResolver;
+        private final int titleString;
+        private final int slideCount;
+        private final int slideTableOffset;
+        private final int stringCount;
+        private final int stringTableOffset;
+
+        BinarySlideSource(ByteBuffer buffer, String filename, ImageResolver imageResolver)
+                throws IOException {
+            this.buffer = buffer;
+            this.filename = filename;
+            this.imageResolver = imageResolver;
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary presentation: " + filename);
+            }
+            int version = buffer.getInt(Integer.BYTES);
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary presentation version " + version + ": "
+                        + filename);
+            }
+            titleString = buffer.getInt(2 * Integer.BYTES);
+            slideCount = buffer.getInt(3 * Integer.BYTES);
+            slideTableOffset = buffer.getInt(4 * Integer.BYTES);
+            stringCount = buffer.getInt(5 * Integer.BYTES);
+            stringTableOffset = buffer.getInt(6 * Integer.BYTES);
+            if (slideCount < 0 || stringCount < 0
+                    || (long) slideTableOffset + (long) slideCount * Integer.BYTES > buffer.limit()
+                    || (long) stringTableOffset + (long) stringCount * 2 * Integer.BYTES
+                            > buffer.limit()) {
+                throw new IOException("Corrupt binary presentation: " + filename);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return slideCount;
+        }
+
+        @Override
+        public Slide loadSlide(int index) throws IOException {
+            try {
+                ByteBuffer record = buffer.duplicate();
+                record.position(buffer.getInt(slideTableOffset + index * Integer.BYTES));
+                Slide slide = new Slide();
+                slide.setTitle(getString(record.getInt()));
+                int itemCount = record.getInt();
+                for (int itemNumber = 0; itemNumber < itemCount; itemNumber++) {
+                    slide.append(readItem(record));
+                }
+                return slide;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException
+                    | IllegalArgumentException ex) {
+                throw new IOException("Corrupt slide " + (index + 1), ex);
+            }
+        }
+
+        private SlideItem readItem(ByteBuffer record) throws IOException {
+            int kind = record.getInt();
+            int level = record.getInt();
+            String string = getString(record.getInt());
+            switch (kind) {
+                case KIND_TEXT:
+                    return new TextItem(level, string);
+                case KIND_IMAGE:
+                    return new BitmapItem(level, string, imageResolver);
+                case KIND_GROUP:
+                    CompositeSlideItem group = new CompositeSlideItem(level, string);
+                    int childCount = record.getInt();
+                    for (int index = 0; index < childCount; index++) {
+                        group.add(readItem(record));
+                    }
+                    return group;
+                default:
+                    throw new IOException(UNKNOWNTYPE + " " + kind);
+            }
+        }
+
+        String getString(int index) throws IOException {
+            if (index == NO_STRING) {
+                return null;
+            }
+            if (index < 0 || index >= stringCount) {
+                throw new IndexOutOfBoundsException("String " + index);
+            }
+            int entry = stringTableOffset + index * 2 * Integer.BYTES;
+            int offset = buffer.getInt(entry);
+            int length = buffer.getInt(entry + Integer.BYTES);
+            if (offset < 0 || length < 0 || (long) offset + length > buffer.limit()) {
+                throw new IOException("Corrupt string " + index + " in " + filename);
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer data = buffer.duplicate();
+            data.position(offset);
+            data.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
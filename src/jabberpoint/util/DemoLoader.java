@@ -11,6 +11,10 @@ import jabberpoint.model.TextItem;
 public class DemoLoader implements PresentationLoader {
     @Override
     public void loadPresentation(Presentation presentation, String unusedFilename) throws IOException {
+        presentation.batch(() -> addSlides(presentation));
+    }
+    
+    private void addSlides(Presentation presentation) {
         presentation.setTitle("Demo Presentation");
         
         Slide slide;
@@ -0,0 +1,376 @@
+package jabberpoint.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideSource;
+
+/**
+ * Loads presentations lazily. Opening a file only scans it once for the
+ * byte offset of each slide element; a slide is parsed when the
+ * presentation first asks for it, and only a bounded number of parsed
+ * slides is kept in memory. This makes very large generated presentations
+ * open quickly. The file is memory-mapped while it is indexed, so it must
+ * be smaller than 2 GB; slides are read from the file itself, so no mapping
+ * is kept while the presentation is open. A slide can no longer be read
+ * once the file was changed, unless the presentation itself was saved over
+ * it: the saved file is then indexed as well.
+ * <p>
+ * PresentationLoaderContext.loaderFor() uses this loader for XML files of
+ * at least LARGE_FILE_SIZE bytes.
+ */
+public class IndexedXMLLoader implements PresentationLoader {
+    /** The size from which XML files are loaded lazily */
+    public static final long LARGE_FILE_SIZE = 16 * 1024 * 1024;
+
+    private static final String SHOWTITLE = "showtitle";
+    private static final String SLIDE = "slide";
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private final XMLInputFactory factory = StreamingXMLLoader.createInputFactory();
+    private final int cacheSize;
+
+    public IndexedXMLLoader() {
+        this(Presentation.DEFAULT_SLIDE_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The number of parsed slides to keep in memory
+     */
+    public IndexedXMLLoader(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Check whether a file is large enough to be loaded lazily
+     * @param filename The file name
+     * @return true if the file exists and has at least LARGE_FILE_SIZE bytes
+     */
+    public static boolean isLargeFile(String filename) {
+        return new File(filename).length() >= LARGE_FILE_SIZE;
+    }
+
+    @Override
+    public void loadPresentation(Presentation presentation, String filename) throws IOException {
+        Path path = Paths.get(filename).toAbsolutePath();
+        Index index = readIndex(path, presentation);
+        presentation.setSlideSource(new IndexedSlideSource(path, index), cacheSize);
+    }
+
+    /**
+     * Index a file
+     * @param path The file
+     * @param presentation The presentation to set the title of, or null
+     * @return The slide offsets of the file
+     */
+    private Index readIndex(Path path, Presentation presentation) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large for indexed loading: " + path);
+            }
+            int size = (int) channel.size();
+            // The mapping is released once it is garbage collected
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] offsets = indexSlides(buffer);
+            String encoding = readHeader(presentation, buffer);
+            return new Index(size, attributes.lastModifiedTime().toMillis(), attributes.fileKey(),
+                    offsets, encoding);
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    /**
+     * Read the show title, stopping at the first slide
+     * @param presentation The presentation to set the title of, or null
+     * @return The encoding declared in the file
+     */
+    private String readHeader(Presentation presentation, MappedByteBuffer buffer)
+            throws XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(
+                new BufferInputStream(buffer.duplicate()));
+        try {
+            String encoding = reader.getCharacterEncodingScheme();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (SHOWTITLE.equals(name)) {
+                        if (presentation != null) {
+                            presentation.setTitle(reader.getElementText());
+                        }
+                        break;
+                    } else if (SLIDE.equals(name)) {
+                        break;
+                    }
+                }
+            }
+            return encoding != null ? encoding : DEFAULT_ENCODING;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Find the offset of every slide start tag. Comments, CDATA sections,
+     * processing instructions and the doctype are skipped.
+     * @param buffer The contents of the file
+     * @return The offsets of the slide elements in document order
+     */
+    static int[] indexSlides(ByteBuffer buffer) {
+        int[] offsets = new int[16];
+        int count = 0;
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            if (buffer.get(position) != '<') {
+                position++;
+            } else if (startsWith(buffer, position, "<!--")) {
+                position = skipPast(buffer, position + 4, "-->");
+            } else if (startsWith(buffer, position, "<![CDATA[")) {
+                position = skipPast(buffer, position + 9, "]]>");
+            } else if (startsWith(buffer, position, "<?")) {
+                position = skipPast(buffer, position + 2, "?>");
+            } else if (startsWith(buffer, position, "<!DOCTYPE")) {
+                position = skipDoctype(buffer, position + 9);
+            } else {
+                if (startsWith(buffer, position, "<" + SLIDE)
+                        && isNameEnd(buffer, position + SLIDE.length() + 1)) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = position;
+                }
+                position++;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int position, String prefix) {
+        if (position + prefix.length() > buffer.limit()) {
+            return false;
+        }
+        for (int index = 0; index < prefix.length(); index++) {
+            if (buffer.get(position + index) != prefix.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipPast(ByteBuffer buffer, int position, String end) {
+        while (position < buffer.limit() && !startsWith(buffer, position, end)) {
+            position++;
+        }
+        return position + end.length();
+    }
+
+    private static int skipDoctype(ByteBuffer buffer, int position) {
+        // The internal subset between brackets may itself contain '>'
+        boolean inSubset = false;
+        while (position < buffer.limit()) {
+            byte b = buffer.get(position++);
+            if (b == '[') {
+                inSubset = true;
+            } else if (b == ']') {
+                inSubset = false;
+            } else if (b == '>' && !inSubset) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    private static boolean isNameEnd(ByteBuffer buffer, int position) {
+        if (position >= buffer.limit()) {
+            return false;
+        }
+        byte b = buffer.get(position);
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * The slide offsets of one state of a file
+     */
+    private static final class Index {
+        private final int size;
+        private final long modified;
+        private final Object fileKey;
+        private final int[] offsets;
+        private final String encoding;
+        // The position in offsets of each slide of the source, or null if they are the same
+        private final int[] positions;
+
+        Index(int size, long modified, Object fileKey, int[] offsets, String encoding) {
+            this(size, modified, fileKey, offsets, encoding, null);
+        }
+
+        private Index(int size, long modified, Object fileKey, int[] offsets, String encoding,
+                int[] positions) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.offsets = offsets;
+            this.encoding = encoding;
+            this.positions = positions;
+        }
+
+        /**
+         * @param positions The position in offsets of each slide of the source
+         * @return This index for a source with other slide positions
+         */
+        Index withPositions(int[] positions) {
+            return new Index(size, modified, fileKey, offsets, encoding, positions);
+        }
+
+        boolean matches(long fileSize, BasicFileAttributes attributes) {
+            return fileSize == size && attributes.lastModifiedTime().toMillis() == modified
+                    && Objects.equals(attributes.fileKey(), fileKey);
+        }
+    }
+
+    /**
+     * Parses single slides from the byte range between two slide offsets
+     */
+    private final class IndexedSlideSource implements SlideSource {
+        private final Path path;
+        private final int slideCount;
+        private Index index;
+        // The index of a file that is about to replace the file
+        private Index replacement;
+
+        IndexedSlideSource(Path path, Index index) {
+            this.path = path;
+            this.slideCount = index.offsets.length;
+            this.index = index;
+        }
+
+        @Override
+        public int getSize() {
+            return slideCount;
+        }
+
+        @Override
+        public Slide loadSlide(int slideIndex) throws IOException {
+            Index current;
+            ByteBuffer bytes;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // The offsets only fit the file as it was indexed
+                current = indexFor(channel.size(), Files.readAttributes(path,
+                        BasicFileAttributes.class));
+                if (current == null) {
+                    throw new IOException(path + " changed since it was opened");
+                }
+                int position = current.positions != null
+                        ? current.positions[slideIndex] : slideIndex;
+                if (position < 0) {
+                    throw new IOException("Slide " + (slideIndex + 1) + " is no longer in " + path);
+                }
+                int start = current.offsets[position];
+                int end = position + 1 < current.offsets.length
+                        ? current.offsets[position + 1] : current.size;
+                bytes = ByteBuffer.allocate(end - start);
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, start + bytes.position()) < 0) {
+                        throw new EOFException(path.toString());
+                    }
+                }
+            }
+            try {
+                XMLStreamReader reader = factory.createXMLStreamReader(
+                        new ByteArrayInputStream(bytes.array()), current.encoding);
+                try {
+                    reader.nextTag();
+                    return StreamingXMLLoader.readSlide(reader, ImageResolver.FILES);
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException xse) {
+                throw new IOException("Cannot parse slide " + (slideIndex + 1) + ": "
+                        + xse.getMessage(), xse);
+            }
+        }
+
+        /**
+         * Find the index that fits the file, switching to the replacement
+         * once it was moved over the file
+         */
+        private synchronized Index indexFor(long fileSize, BasicFileAttributes attributes) {
+            if (replacement != null && replacement.matches(fileSize, attributes)) {
+                index = replacement;
+                replacement = null;
+            }
+            return index.matches(fileSize, attributes) ? index : null;
+        }
+
+        @Override
+        public void fileReplaced(Path file, Path newFile, int[] sourceIndices) throws IOException {
+            if (!Files.exists(file) || !Files.isSameFile(path, file)) {
+                return;
+            }
+            int[] positions = new int[slideCount];
+            Arrays.fill(positions, -1);
+            for (int position = 0; position < sourceIndices.length; position++) {
+                if (sourceIndices[position] >= 0) {
+                    positions[sourceIndices[position]] = position;
+                }
+            }
+            Index replacing = readIndex(newFile, null).withPositions(positions);
+            if (replacing.offsets.length != sourceIndices.length) {
+                throw new IOException("Cannot index the slides of " + newFile);
+            }
+            // A previous replacement may not have been read from yet
+            indexFor(Files.size(file), Files.readAttributes(file, BasicFileAttributes.class));
+            synchronized (this) {
+                replacement = replacing;
+            }
+        }
+    }
+
+    /**
+     * Reads a mapped buffer without copying it first
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
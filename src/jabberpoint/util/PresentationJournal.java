@@ -0,0 +1,675 @@
+package jabberpoint.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.FailedSlide;
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEditListener;
+import jabberpoint.model.PresentationEvent;
+import jabberpoint.model.PresentationObserver;
+import jabberpoint.model.PresentationVersion;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.TextItem;
+
+/**
+ * Saves a presentation incrementally. Instead of rewriting the whole file
+ * on every save, each edit is appended as a small record to a journal file
+ * next to the base file. Once the journal grows past a threshold, a full
+ * snapshot is written to the base file on a background thread and the
+ * journal is restarted.
+ * <p>
+ * The journal header holds the length and modification time of the base
+ * file it applies to, so a journal is never replayed on top of a different
+ * base. Records carry a CRC; a record cut short by a crash is ignored.
+ * Slide content edits are recorded when they are announced with
+ * slideChanged() or appendItem(), or when observers are notified while the
+ * edited slide is the current slide, which is how the editor works.
+ */
+public final class PresentationJournal
+        implements PresentationObserver, PresentationEditListener, Closeable {
+    /** Appended to the name of the base file to get the name of its journal */
+    public static final String SUFFIX = ".journal";
+    /** The journal size in bytes from which the journal is compacted into the base file */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    static final int MAGIC = 0x4A504A00; // "JPJ\0"
+    static final int HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+    private static final String PENDING = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte TITLE = 1;
+    private static final byte INSERT = 2;
+    private static final byte REMOVE = 3;
+    private static final byte REPLACE = 4;
+
+    private static final byte KIND_TEXT = 0;
+    private static final byte KIND_IMAGE = 1;
+    private static final byte KIND_GROUP = 2;
+
+    private static final String UNKNOWNTYPE = "Unknown Element type";
+    private static final String JOURNALERR = "Journal error: ";
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JabberPoint journal compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Presentation presentation;
+    private final Path base;
+    private final Path journal;
+    private final Path pendingJournal;
+    private final PresentationSaver saver;
+    private final long compactionThreshold;
+    // Revision of each slide when it was last recorded or first seen
+    private final Map<Slide, Integer> revisions = new WeakHashMap<>();
+    private DataOutputStream out;
+    private long size;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+    private long compactions;
+    private boolean closed;
+
+    private PresentationJournal(Presentation presentation, String baseFile,
+            long compactionThreshold) throws IOException {
+        this.presentation = presentation;
+        this.base = Paths.get(baseFile).toAbsolutePath();
+        this.journal = journalPath(base);
+        this.pendingJournal = journal.resolveSibling(journal.getFileName() + PENDING);
+        this.saver = PresentationSaveService.saverFor(baseFile);
+        this.compactionThreshold = compactionThreshold;
+        if (!Files.exists(base)) {
+            saver.savePresentation(presentation, base.toString());
+        }
+        if (!appliesTo(journal, base)) {
+            if (appliesTo(pendingJournal, base)) {
+                move(pendingJournal, journal);
+            } else {
+                try (DataOutputStream header = new DataOutputStream(
+                        Files.newOutputStream(journal))) {
+                    writeHeader(header, base);
+                }
+            }
+        }
+        size = readRecords(journal, null);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            // Drop a record that was cut short, so new records can be read back
+            channel.truncate(size);
+        }
+        out = openForAppend(journal);
+    }
+
+    /**
+     * Start journaling the edits of a presentation. If the base file does
+     * not exist yet, the presentation is saved to it first.
+     * @param presentation The presentation, already loaded from the base file
+     * @param baseFile The XML or binary presentation file
+     * @return The journal, attached to the presentation
+     * @throws IOException If the journal cannot be created
+     */
+    public static PresentationJournal open(Presentation presentation, String baseFile)
+            throws IOException {
+        return open(presentation, baseFile, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Start journaling the edits of a presentation
+     * @param presentation The presentation, already loaded from the base file
+     * @param baseFile The XML or binary presentation file
+     * @param compactionThreshold The journal size in bytes that triggers a full save
+     * @return The journal, attached to the presentation
+     * @throws IOException If the journal cannot be created
+     */
+    public static PresentationJournal open(Presentation presentation, String baseFile,
+            long compactionThreshold) throws IOException {
+        PresentationJournal journal = new PresentationJournal(presentation, baseFile,
+                compactionThreshold);
+        Slide current = presentation.getCurrentSlide();
+        if (current != null) {
+            journal.revisions.put(current, current.getRevision());
+        }
+        presentation.addEditListener(journal);
+        presentation.addObserver(journal);
+        return journal;
+    }
+
+    /**
+     * Load a presentation from its base file and replay its journal on top
+     * @param presentation The presentation to load into
+     * @param baseFile The XML or binary presentation file
+     * @return The number of journal records that were replayed
+     * @throws IOException If the base file cannot be loaded
+     */
+    public static int load(Presentation presentation, String baseFile) throws IOException {
+        // Observers see the result once, not every replayed record
+        presentation.beginUpdate();
+        try {
+            PresentationLoaderContext.loaderFor(baseFile).loadPresentation(presentation, baseFile);
+            return replay(presentation, readJournal(baseFile), imageResolver(baseFile));
+        } finally {
+            presentation.endUpdate();
+        }
+    }
+
+    /**
+     * Read the records of the journal that belongs to a base file, so they
+     * can be replayed once the base file is loaded
+     * @param baseFile The XML or binary presentation file
+     * @return The intact records, or none if there is no journal for the
+     *         current version of the base file
+     * @throws IOException If the journal cannot be read
+     */
+    static List<byte[]> readJournal(String baseFile) throws IOException {
+        Path base = Paths.get(baseFile).toAbsolutePath();
+        Path journal = journalPath(base);
+        List<byte[]> records = new ArrayList<>();
+        if (!appliesTo(journal, base)) {
+            journal = journal.resolveSibling(journal.getFileName() + PENDING);
+            if (!appliesTo(journal, base)) {
+                return records;
+            }
+        }
+        readRecords(journal, records::add);
+        return records;
+    }
+
+    /**
+     * Get the resolver that finds the images of replayed items the way the
+     * loader of the base file does, so images stored in an archive are
+     * still found there
+     * @param baseFile The presentation file
+     * @return The resolver
+     * @throws IOException If the base file cannot be opened
+     */
+    static ImageResolver imageResolver(String baseFile) throws IOException {
+        return ArchiveAccessor.isArchiveFile(baseFile)
+                ? ArchiveAccessor.imageResolver(baseFile) : ImageResolver.FILES;
+    }
+
+    /**
+     * Apply journal records to a presentation loaded from their base file.
+     * Replaying stops at the first record that does not fit the presentation.
+     * @param presentation The presentation
+     * @param records The records, as returned by readJournal()
+     * @param resolver Finds the images of the items, as returned by imageResolver()
+     * @return The number of records that were replayed
+     */
+    static int replay(Presentation presentation, List<byte[]> records, ImageResolver resolver) {
+        int count = 0;
+        presentation.beginUpdate();
+        try {
+            for (byte[] payload : records) {
+                apply(presentation, payload, resolver);
+                count++;
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println(JOURNALERR + "ignoring records after record " + count + ": "
+                    + ex.getMessage());
+        } finally {
+            presentation.endUpdate();
+        }
+        return count;
+    }
+
+    /**
+     * Get the journal file that belongs to a base file
+     * @param base The presentation file
+     * @return The journal file
+     */
+    public static Path journalPath(Path base) {
+        return base.resolveSibling(base.getFileName() + SUFFIX);
+    }
+
+    @Override
+    public void update(Presentation presentation, Slide slide) {
+        if (slide == null) {
+            return;
+        }
+        Integer recorded = revisions.get(slide);
+        int revision = slide.getRevision();
+        // A slide that could not be loaded must not replace the real one
+        if (recorded != null && recorded != revision && !(slide instanceof FailedSlide)) {
+            int index = presentation.getSlideNumber();
+            record(REPLACE, record -> {
+                record.writeInt(index);
+                writeSlide(record, slide);
+            });
+        }
+        revisions.put(slide, revision);
+    }
+
+    @Override
+    public void presentationChanged(PresentationEvent event) {
+        if (event instanceof PresentationEvent.SlideChanged) {
+            int index = ((PresentationEvent.SlideChanged) event).getIndex();
+            slideEdited(event.getPresentation(), index);
+        } else if (event instanceof PresentationEvent.ItemAdded) {
+            int index = ((PresentationEvent.ItemAdded) event).getSlideIndex();
+            slideEdited(event.getPresentation(), index);
+        } else {
+            PresentationEditListener.super.presentationChanged(event);
+        }
+    }
+
+    /**
+     * Record the content of a slide that was edited in place
+     */
+    private void slideEdited(Presentation presentation, int index) {
+        Slide slide = presentation.getSlide(index);
+        if (slide == null || slide instanceof FailedSlide) {
+            return;
+        }
+        record(REPLACE, record -> {
+            record.writeInt(index);
+            writeSlide(record, slide);
+        });
+        revisions.put(slide, slide.getRevision());
+    }
+
+    @Override
+    public void titleChanged(Presentation presentation, String title) {
+        record(TITLE, record -> writeString(record, title));
+    }
+
+    @Override
+    public void slideInserted(Presentation presentation, int index, Slide slide) {
+        record(INSERT, record -> {
+            record.writeInt(index);
+            writeSlide(record, slide);
+        });
+        revisions.put(slide, slide.getRevision());
+    }
+
+    @Override
+    public void slideRemoved(Presentation presentation, int index, Slide slide) {
+        record(REMOVE, record -> record.writeInt(index));
+        revisions.remove(slide);
+    }
+
+    @Override
+    public void slidesReplaced(Presentation presentation) {
+        // A new set of slides cannot be expressed as edits, so save it in full
+        revisions.clear();
+        compact();
+    }
+
+    private void record(byte type, RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(type);
+            writer.write(record);
+        } catch (IOException ex) {
+            // Not expected when writing to memory
+            throw new UncheckedIOException(ex);
+        }
+        if (append(bytes.toByteArray())) {
+            compact();
+        }
+    }
+
+    /**
+     * Append a record to the journal
+     * @return true if the journal has grown large enough to be compacted
+     */
+    private synchronized boolean append(byte[] payload) {
+        if (closed) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        try {
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+            out.flush();
+            size += 2 * Integer.BYTES + payload.length;
+        } catch (IOException ex) {
+            System.err.println(JOURNALERR + ex.getMessage());
+        }
+        return size > compactionThreshold;
+    }
+
+    /**
+     * Write a full snapshot of the presentation to the base file on a
+     * background thread and restart the journal. Edits made while the
+     * snapshot is written are kept in the new journal.
+     * @return A future that completes when the base file has been replaced
+     */
+    public CompletableFuture<Void> compact() {
+        // Edits are recorded with the presentation locked, so lock it before
+        // this journal too; that also keeps the version and the journal
+        // length in step
+        presentation.batch(this::startCompaction);
+        synchronized (this) {
+            return compaction;
+        }
+    }
+
+    /**
+     * Start writing a snapshot, unless one is being written. Called with
+     * the presentation locked.
+     */
+    private synchronized void startCompaction() {
+        if (closed || !compaction.isDone()) {
+            return;
+        }
+        PresentationVersion version = presentation.getVersion();
+        long start = size;
+        compaction = CompletableFuture.runAsync(() -> {
+            try {
+                writeSnapshot(version, start);
+            } catch (IOException ex) {
+                System.err.println(JOURNALERR + ex.getMessage());
+                throw new UncheckedIOException(ex);
+            }
+        }, COMPACTOR);
+    }
+
+    private void writeSnapshot(PresentationVersion version, long start) throws IOException {
+        Path tempBase = base.resolveSibling(base.getFileName() + PENDING);
+        saver.savePresentation(version.toPresentation(), tempBase.toString());
+        // Slides that were not loaded may be read from the base file
+        version.fileReplaced(base, tempBase);
+        synchronized (this) {
+            if (closed) {
+                Files.deleteIfExists(tempBase);
+                return;
+            }
+            out.flush();
+            // Records appended since the snapshot was taken move to the new journal
+            try (DataOutputStream pending = new DataOutputStream(
+                        Files.newOutputStream(pendingJournal));
+                    InputStream tail = Files.newInputStream(journal)) {
+                writeHeader(pending, tempBase);
+                long skipped = 0;
+                while (skipped < start) {
+                    skipped += tail.skip(start - skipped);
+                }
+                tail.transferTo(pending);
+            }
+            move(tempBase, base);
+            out.close();
+            move(pendingJournal, journal);
+            out = openForAppend(journal);
+            size = HEADER_SIZE + size - start;
+            compactions++;
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Stop journaling. A running compaction is completed first.
+     * @throws IOException If the journal cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        presentation.removeObserver(this);
+        presentation.removeEditListener(this);
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        try {
+            running.join();
+        } catch (RuntimeException ex) {
+            // Already reported; the journal still holds the edits
+        }
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    private static DataOutputStream openForAppend(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path.toFile(), true), BUFFER_SIZE));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, Path base) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(Files.size(base));
+        out.writeLong(Files.getLastModifiedTime(base).toMillis());
+    }
+
+    /**
+     * Check whether a journal was written for the current version of a base file
+     */
+    private static boolean appliesTo(Path journal, Path base) throws IOException {
+        if (!Files.isRegularFile(journal) || !Files.isRegularFile(base)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(journal))) {
+            return in.readInt() == MAGIC
+                    && in.readLong() == Files.size(base)
+                    && in.readLong() == Files.getLastModifiedTime(base).toMillis();
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Interface for writing the body of a journal record
+     */
+    private interface RecordWriter {
+        void write(DataOutputStream record) throws IOException;
+    }
+
+    /**
+     * Interface for handling the payload of a journal record
+     */
+    private interface RecordHandler {
+        void handle(byte[] payload) throws IOException;
+    }
+
+    /**
+     * Read the records of a journal up to the end or the first damaged record
+     * @param journal The journal file
+     * @param handler Receives the payload of each record, or null to only validate
+     * @return The length of the journal up to the last intact record
+     */
+    private static long readRecords(Path journal, RecordHandler handler) throws IOException {
+        long valid = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(journal), BUFFER_SIZE))) {
+            in.skipBytes(HEADER_SIZE);
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                try {
+                    if (length < 0) {
+                        throw new IOException("Invalid record length " + length);
+                    }
+                    int checksum = in.readInt();
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("Checksum mismatch");
+                    }
+                    if (handler != null) {
+                        handler.handle(payload);
+                    }
+                } catch (IOException | IllegalArgumentException ex) {
+                    System.err.println(JOURNALERR + "ignoring records after offset " + valid
+                            + " of " + journal + ": " + ex.getMessage());
+                    break;
+                }
+                valid += 2 * Integer.BYTES + length;
+            }
+        }
+        return valid;
+    }
+
+    private static void apply(Presentation presentation, byte[] payload, ImageResolver resolver)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case TITLE:
+                presentation.setTitle(readString(in));
+                break;
+            case INSERT:
+                presentation.insertSlide(in.readInt(), readSlide(in, resolver));
+                break;
+            case REMOVE:
+                presentation.removeSlide(in.readInt());
+                break;
+            case REPLACE:
+                int index = in.readInt();
+                Slide slide = readSlide(in, resolver);
+                presentation.removeSlide(index);
+                presentation.insertSlide(index, slide);
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private static void writeSlide(DataOutputStream out, Slide slide) throws IOException {
+        writeString(out, slide.getTitle());
+        out.writeInt(slide.getSize());
+        for (int itemNumber = 0; itemNumber < slide.getSize(); itemNumber++) {
+            writeItem(out, slide.getSlideItem(itemNumber));
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, SlideItem item) throws IOException {
+        if (item instanceof TextItem) {
+            out.writeByte(KIND_TEXT);
+            out.writeInt(item.getLevel());
+            writeString(out, ((TextItem) item).getText());
+        } else if (item instanceof BitmapItem) {
+            out.writeByte(KIND_IMAGE);
+            out.writeInt(item.getLevel());
+            writeString(out, ((BitmapItem) item).getName());
+        } else if (item instanceof CompositeSlideItem) {
+            CompositeSlideItem group = (CompositeSlideItem) item;
+            out.writeByte(KIND_GROUP);
+            out.writeInt(item.getLevel());
+            writeString(out, group.getName());
+            out.writeInt(group.getSize());
+            for (int index = 0; index < group.getSize(); index++) {
+                writeItem(out, group.getChild(index));
+            }
+        } else {
+            // Keep the item count right; the item is dropped when replaying
+            System.err.println(UNKNOWNTYPE);
+            out.writeByte(-1);
+        }
+    }
+
+    private static Slide readSlide(DataInputStream in, ImageResolver resolver) throws IOException {
+        Slide slide = new Slide();
+        slide.setTitle(readString(in));
+        int itemCount = in.readInt();
+        for (int itemNumber = 0; itemNumber < itemCount; itemNumber++) {
+            SlideItem item = readItem(in, resolver);
+            if (item != null) {
+                slide.append(item);
+            }
+        }
+        return slide;
+    }
+
+    private static SlideItem readItem(DataInputStream in, ImageResolver resolver)
+            throws IOException {
+        byte kind = in.readByte();
+        if (kind == -1) {
+            return null;
+        }
+        int level = in.readInt();
+        String string = readString(in);
+        switch (kind) {
+            case KIND_TEXT:
+                return new TextItem(level, string);
+            case KIND_IMAGE:
+                return new BitmapItem(level, string, resolver);
+            case KIND_GROUP:
+                CompositeSlideItem group = new CompositeSlideItem(level, string);
+                int childCount = in.readInt();
+                for (int index = 0; index < childCount; index++) {
+                    SlideItem child = readItem(in, resolver);
+                    if (child != null) {
+                        group.add(child);
+                    }
+                }
+                return group;
+            default:
+                throw new IOException(UNKNOWNTYPE + " " + kind);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
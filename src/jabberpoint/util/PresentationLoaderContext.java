@@ -1,7 +1,15 @@
 package jabberpoint.util;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEditListener;
+import jabberpoint.model.Slide;
 
 /**
  * Context class for the Strategy pattern for loading presentations.
@@ -9,6 +17,13 @@ import jabberpoint.model.Presentation;
  * and delegates to it for loading presentations.
  */
 public class PresentationLoaderContext {
+    // Loads run one at a time, off the Swing event thread
+    static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JabberPoint load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private PresentationLoader loaderStrategy;
     
     /**
@@ -19,6 +34,26 @@ public class PresentationLoaderContext {
         this.loaderStrategy = loaderStrategy;
     }
     
+    /**
+     * Choose the loader strategy for a file from its extension
+     * @param filename The name of the presentation file
+     * @return An ArchiveAccessor for .jpz files, a BinaryAccessor for .jpb
+     *         files, an IndexedXMLLoader for large XML files, otherwise a
+     *         StreamingXMLLoader
+     */
+    public static PresentationLoader loaderFor(String filename) {
+        if (ArchiveAccessor.isArchiveFile(filename)) {
+            return new ArchiveAccessor();
+        }
+        if (BinaryAccessor.isBinaryFile(filename)) {
+            return new BinaryAccessor();
+        }
+        if (IndexedXMLLoader.isLargeFile(filename)) {
+            return new IndexedXMLLoader();
+        }
+        return new StreamingXMLLoader();
+    }
+    
     /**
      * Change the loader strategy at runtime
      * @param loaderStrategy The new strategy to use
@@ -40,6 +75,81 @@ public class PresentationLoaderContext {
         loaderStrategy.loadPresentation(presentation, source);
     }
     
+    /**
+     * Load a presentation on a background thread using the current strategy.
+     * The presentation is loaded into a new Presentation, so the one being
+     * shown is not touched until the caller swaps it in, for example with
+     * Presentation.replaceWith() on the event thread. Cancelling the future
+     * stops the load at the next slide.
+     * @param source The source identifier
+     * @return A future that completes with the loaded presentation, or with
+     *         an UncheckedIOException if loading fails
+     */
+    public CompletableFuture<Presentation> loadAsync(String source) {
+        PresentationLoader loader = loaderStrategy;
+        if (loader == null) {
+            throw new IllegalStateException("No loader strategy set");
+        }
+        CompletableFuture<Presentation> result = new CompletableFuture<>();
+        LOADER.execute(() -> {
+            if (result.isCancelled()) {
+                return;
+            }
+            Presentation loaded = new Presentation();
+            PresentationEditListener cancelCheck = new CancelCheck(result);
+            loaded.addEditListener(cancelCheck);
+            try {
+                loader.loadPresentation(loaded, source);
+                loaded.removeEditListener(cancelCheck);
+                result.complete(loaded);
+            } catch (CancellationException ex) {
+                // The caller no longer wants the presentation
+            } catch (IOException ex) {
+                result.completeExceptionally(new UncheckedIOException(ex));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Stops a loader at the next slide once its load was cancelled
+     */
+    private static class CancelCheck implements PresentationEditListener {
+        private final CompletableFuture<?> result;
+        
+        CancelCheck(CompletableFuture<?> result) {
+            this.result = result;
+        }
+        
+        @Override
+        public void titleChanged(Presentation presentation, String title) {
+            check();
+        }
+        
+        @Override
+        public void slideInserted(Presentation presentation, int index, Slide slide) {
+            check();
+        }
+        
+        @Override
+        public void slideRemoved(Presentation presentation, int index, Slide slide) {
+            check();
+        }
+        
+        @Override
+        public void slidesReplaced(Presentation presentation) {
+            check();
+        }
+        
+        private void check() {
+            if (result.isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+    }
+    
     /**
      * Get the current loader strategy
      * @return The current PresentationLoader strategy
@@ -0,0 +1,254 @@
+package jabberpoint.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.TextItem;
+
+/**
+ * Follows changes to a presentation file. When the file is written, it is
+ * parsed again into a separate presentation and compared slide by slide
+ * with the one being shown. Only the slides that differ are replaced, so
+ * unchanged slides keep their cached layouts and the viewer stays on the
+ * same slide.
+ * <p>
+ * The file is parsed on a background thread; the changes are applied on
+ * the model thread, which is the Swing event thread by default.
+ */
+public class PresentationReloader implements Closeable {
+    /** The time in milliseconds a file must stay unchanged before it is reloaded */
+    public static final long DEFAULT_SETTLE_MILLIS = 200;
+
+    private static final String RELOADERR = "Reload failed: ";
+
+    private final Presentation presentation;
+    private final Path file;
+    private final long settleMillis;
+    private final Executor modelExecutor;
+    private final WatchService watcher;
+    private final Thread thread;
+    private volatile long reloadCount;
+    private volatile boolean closed;
+
+    /**
+     * Follow a file, applying changes on the Swing event thread
+     * @param presentation The presentation loaded from the file
+     * @param filename The file to follow
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public PresentationReloader(Presentation presentation, String filename) throws IOException {
+        this(presentation, filename, DEFAULT_SETTLE_MILLIS, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param presentation The presentation loaded from the file
+     * @param filename The file to follow
+     * @param settleMillis How long the file must be left alone before it is
+     *        read, so a file written in several steps is read once
+     * @param modelExecutor Runs tasks on the thread that edits the presentation
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public PresentationReloader(Presentation presentation, String filename, long settleMillis,
+            Executor modelExecutor) throws IOException {
+        this.presentation = presentation;
+        this.file = Paths.get(filename).toAbsolutePath();
+        this.settleMillis = settleMillis;
+        this.modelExecutor = modelExecutor;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        // Watch the directory, since saving by rename replaces the file itself
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "JabberPoint reload " + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!changed(watcher.take())) {
+                    continue;
+                }
+                // Wait until the writer is done with the file
+                WatchKey key;
+                while ((key = watcher.poll(settleMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed(key);
+                }
+                reload();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // Closed
+        }
+    }
+
+    /**
+     * Check whether a watch key reports a change to the followed file
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        Presentation loaded = new Presentation();
+        try {
+            String filename = file.toString();
+            PresentationLoaderContext.loaderFor(filename).loadPresentation(loaded, filename);
+        } catch (IOException | RuntimeException ex) {
+            // Most likely the file was read half written; the next change reloads it
+            System.err.println(RELOADERR + ex.getMessage());
+            return;
+        }
+        modelExecutor.execute(() -> {
+            if (!closed) {
+                presentation.batch(() -> merge(presentation, loaded));
+                reloadCount++;
+            }
+        });
+    }
+
+    /**
+     * Bring a presentation up to date with a newly loaded version of it.
+     * Slides that are equal at the start and at the end of both versions are
+     * kept, so inserting or removing a slide does not replace the slides
+     * after it. The current slide number is kept where possible.
+     * Presentations whose slides are loaded on demand are replaced as a
+     * whole, because comparing them would load every slide, and the slides
+     * of the presentation may no longer be readable from the changed file.
+     * @param presentation The presentation to update
+     * @param loaded The newly loaded version
+     * @return The number of slides that were replaced, inserted or removed
+     */
+    static int merge(Presentation presentation, Presentation loaded) {
+        if (!Objects.equals(presentation.getTitle(), loaded.getTitle())) {
+            presentation.setTitle(loaded.getTitle());
+        }
+        int oldSize = presentation.getSize();
+        int newSize = loaded.getSize();
+        if (presentation.hasSlideSource() || loaded.hasSlideSource()) {
+            int slideNumber = presentation.getSlideNumber();
+            presentation.replaceWith(loaded);
+            if (newSize > 0) {
+                presentation.setSlideNumber(Math.min(slideNumber, newSize - 1));
+            }
+            return Math.max(oldSize, newSize);
+        }
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize
+                && sameSlide(presentation.getSlide(prefix), loaded.getSlide(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && sameSlide(presentation.getSlide(oldSize - 1 - suffix),
+                        loaded.getSlide(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        int oldEnd = oldSize - suffix;
+        int newEnd = newSize - suffix;
+        int slideNumber = presentation.getSlideNumber();
+        int changes = 0;
+        int index = prefix;
+        for (; index < oldEnd && index < newEnd; index++) {
+            presentation.replaceSlide(index, loaded.getSlide(index));
+            changes++;
+        }
+        for (int removed = index; removed < oldEnd; removed++) {
+            presentation.removeSlide(index);
+            changes++;
+        }
+        for (; index < newEnd; index++) {
+            presentation.insertSlide(index, loaded.getSlide(index));
+            changes++;
+        }
+        if (changes > 0 && newSize > 0) {
+            presentation.setSlideNumber(Math.max(0, Math.min(slideNumber, newSize - 1)));
+        }
+        return changes;
+    }
+
+    private static boolean sameSlide(Slide a, Slide b) {
+        if (!Objects.equals(a.getTitle(), b.getTitle()) || a.getSize() != b.getSize()) {
+            return false;
+        }
+        for (int index = 0; index < a.getSize(); index++) {
+            if (!sameItem(a.getSlideItem(index), b.getSlideItem(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameItem(SlideItem a, SlideItem b) {
+        if (a.getClass() != b.getClass() || a.getLevel() != b.getLevel()) {
+            return false;
+        }
+        if (a instanceof TextItem) {
+            return Objects.equals(((TextItem) a).getText(), ((TextItem) b).getText());
+        }
+        if (a instanceof BitmapItem) {
+            return Objects.equals(((BitmapItem) a).getName(), ((BitmapItem) b).getName());
+        }
+        if (a instanceof CompositeSlideItem) {
+            CompositeSlideItem groupA = (CompositeSlideItem) a;
+            CompositeSlideItem groupB = (CompositeSlideItem) b;
+            if (!Objects.equals(groupA.getName(), groupB.getName())
+                    || groupA.getSize() != groupB.getSize()) {
+                return false;
+            }
+            for (int index = 0; index < groupA.getSize(); index++) {
+                if (!sameItem(groupA.getChild(index), groupB.getChild(index))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    public String getFilename() {
+        return file.toString();
+    }
+
+    /**
+     * Stop following the file. A reload that was already read is dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watcher.close();
+        } catch (IOException ex) {
+            System.err.println(RELOADERR + ex.getMessage());
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,106 @@
+package jabberpoint.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationVersion;
+
+/**
+ * Saves presentations on a background thread. The current version of the
+ * presentation is taken on the calling thread, which does not copy it, so
+ * it can be edited while that version is written.
+ * The file is written to a temporary file in the same directory, flushed
+ * to disk and then renamed over the target, so a crash during a save
+ * leaves the previous version intact. Saves run one at a time, in the
+ * order they were requested.
+ */
+public class PresentationSaveService {
+    private static final String TEMP_SUFFIX = ".saving";
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JabberPoint save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Choose the saver strategy for a file from its extension
+     * @param filename The name of the presentation file
+     * @return An ArchiveAccessor for .jpz files, a BinaryAccessor for .jpb
+     *         files, otherwise an XMLAccessor
+     */
+    public static PresentationSaver saverFor(String filename) {
+        if (ArchiveAccessor.isArchiveFile(filename)) {
+            return new ArchiveAccessor();
+        }
+        if (BinaryAccessor.isBinaryFile(filename)) {
+            return new BinaryAccessor();
+        }
+        return new XMLAccessor();
+    }
+
+    /**
+     * Save a presentation in the format that matches the file extension
+     * @param presentation The presentation to save
+     * @param filename The file to save to
+     * @return A future that completes with the saved file, or with an
+     *         UncheckedIOException if saving failed
+     */
+    public CompletableFuture<Path> save(Presentation presentation, String filename) {
+        return save(presentation, filename, saverFor(filename));
+    }
+
+    /**
+     * Save a presentation with the given saver strategy
+     * @param presentation The presentation to save
+     * @param filename The file to save to
+     * @param saver The saver that writes the file
+     * @return A future that completes with the saved file, or with an
+     *         UncheckedIOException if saving failed
+     */
+    public CompletableFuture<Path> save(Presentation presentation, String filename,
+            PresentationSaver saver) {
+        PresentationVersion version = presentation.getVersion();
+        Path target = Paths.get(filename).toAbsolutePath();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(version, target, saver);
+                return target;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, WRITER);
+    }
+
+    private static void write(PresentationVersion version, Path target, PresentationSaver saver)
+            throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            saver.savePresentation(version.toPresentation(), temp.toString());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            // Slides that were not loaded may be read from the target
+            version.fileReplaced(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
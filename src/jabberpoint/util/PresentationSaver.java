@@ -0,0 +1,38 @@
+package jabberpoint.util;
+
+import jabberpoint.model.FailedSlide;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import java.io.IOException;
+
+/**
+ * Strategy interface for saving presentations.
+ * This is the counterpart of PresentationLoader in the Strategy design pattern.
+ */
+public interface PresentationSaver {
+    /**
+     * Saves a presentation to a destination
+     * @param presentation The presentation to save
+     * @param destination The destination identifier (typically a filename)
+     * @throws IOException If saving fails
+     */
+    void savePresentation(Presentation presentation, String destination) throws IOException;
+
+    /**
+     * Get a slide to write. A slide that could not be loaded is refused,
+     * so that a save never replaces the real slide with its placeholder.
+     * @param presentation The presentation that is saved
+     * @param number The number of the slide
+     * @return The slide
+     * @throws IOException If the slide could not be loaded
+     */
+    static Slide getSlideToSave(Presentation presentation, int number) throws IOException {
+        Slide slide = presentation.getSlide(number);
+        if (slide instanceof FailedSlide) {
+            Exception error = ((FailedSlide) slide).getError();
+            throw new IOException("Slide " + (number + 1) + " could not be loaded: "
+                    + error.getMessage(), error);
+        }
+        return slide;
+    }
+}
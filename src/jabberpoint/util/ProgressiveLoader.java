@@ -0,0 +1,242 @@
+package jabberpoint.util;
+
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEditListener;
+import jabberpoint.model.Slide;
+
+/**
+ * Loads a presentation file on a background thread and adds each slide to
+ * the presentation as soon as it is parsed, so the first slide can be shown
+ * while the rest of the file is still being read. Slides parsed while the
+ * model thread was busy are added together, with one notification. Formats that already read
+ * their slides on demand are loaded completely and then shown at once.
+ * Edits recorded in a PresentationJournal next to the file are replayed
+ * once the file is loaded.
+ * <p>
+ * The presentation is only changed on the model thread, which is the Swing
+ * event thread by default. Progress is reported on the same thread.
+ */
+public class ProgressiveLoader {
+    /**
+     * Receives the progress of a load on the model thread
+     */
+    public interface ProgressListener {
+        /**
+         * @param slidesLoaded The number of slides added to the presentation so far
+         * @param bytesRead The number of bytes of the file read so far
+         * @param totalBytes The size of the file
+         */
+        void progress(int slidesLoaded, long bytesRead, long totalBytes);
+    }
+
+    private final Presentation presentation;
+    private final Executor modelExecutor;
+
+    /**
+     * Load into a presentation that is shown on the Swing event thread
+     * @param presentation The presentation to load into
+     */
+    public ProgressiveLoader(Presentation presentation) {
+        this(presentation, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param presentation The presentation to load into
+     * @param modelExecutor Runs tasks on the thread that edits the presentation
+     */
+    public ProgressiveLoader(Presentation presentation, Executor modelExecutor) {
+        this.presentation = presentation;
+        this.modelExecutor = modelExecutor;
+    }
+
+    /**
+     * Clear the presentation and start loading a file into it. Must be called
+     * on the model thread. Cancelling the returned future stops the load;
+     * the slides that were already added stay in the presentation.
+     * @param filename The file to load
+     * @param listener Receives the progress, or null
+     * @return A future that completes on the model thread when all slides
+     *         were added, or with an UncheckedIOException if loading failed
+     */
+    public CompletableFuture<Presentation> load(String filename, ProgressListener listener) {
+        presentation.clear();
+        CompletableFuture<Presentation> result = new CompletableFuture<>();
+        PresentationLoaderContext.LOADER.execute(new LoadTask(filename, listener, result));
+        return result;
+    }
+
+    private class LoadTask implements Runnable, PresentationEditListener {
+        private final String filename;
+        private final ProgressListener listener;
+        private final CompletableFuture<Presentation> result;
+        private final Queue<Slide> parsed = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private volatile long bytesRead;
+        private long totalBytes;
+        private int slidesLoaded;
+        private boolean replaced;
+
+        LoadTask(String filename, ProgressListener listener,
+                CompletableFuture<Presentation> result) {
+            this.filename = filename;
+            this.listener = listener;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            Presentation staging = new Presentation();
+            staging.addEditListener(this);
+            List<byte[]> journal;
+            ImageResolver resolver;
+            try {
+                totalBytes = Files.size(Paths.get(filename));
+                PresentationLoader loader = PresentationLoaderContext.loaderFor(filename);
+                if (loader instanceof StreamingXMLLoader) {
+                    try (InputStream in = new ProgressInputStream(new FileInputStream(filename))) {
+                        ((StreamingXMLLoader) loader).loadPresentation(staging, in);
+                    }
+                } else {
+                    loader.loadPresentation(staging, filename);
+                    bytesRead = totalBytes;
+                }
+                journal = PresentationJournal.readJournal(filename);
+                resolver = PresentationJournal.imageResolver(filename);
+            } catch (CancellationException | InterruptedIOException ex) {
+                return;
+            } catch (IOException ex) {
+                modelExecutor.execute(() ->
+                        result.completeExceptionally(new UncheckedIOException(ex)));
+                return;
+            } catch (RuntimeException ex) {
+                modelExecutor.execute(() -> result.completeExceptionally(ex));
+                return;
+            }
+            staging.removeEditListener(this);
+            modelExecutor.execute(() -> {
+                if (result.isCancelled()) {
+                    return;
+                }
+                if (replaced) {
+                    presentation.replaceWith(staging);
+                    slidesLoaded = presentation.getSize();
+                } else {
+                    drain();
+                }
+                if (!journal.isEmpty()) {
+                    PresentationJournal.replay(presentation, journal, resolver);
+                    slidesLoaded = presentation.getSize();
+                }
+                bytesRead = totalBytes;
+                report();
+                result.complete(presentation);
+            });
+        }
+
+        /**
+         * Add the slides parsed so far to the presentation
+         */
+        private void drain() {
+            drainScheduled.set(false);
+            presentation.batch(() -> {
+                Slide slide;
+                while (!result.isCancelled() && (slide = parsed.poll()) != null) {
+                    presentation.addSlide(slide);
+                    slidesLoaded++;
+                }
+            });
+        }
+
+        private void report() {
+            if (listener != null) {
+                listener.progress(slidesLoaded, bytesRead, totalBytes);
+            }
+        }
+
+        @Override
+        public void titleChanged(Presentation staging, String title) {
+            modelExecutor.execute(() -> {
+                if (!result.isCancelled()) {
+                    presentation.setTitle(title);
+                }
+            });
+        }
+
+        @Override
+        public void slideInserted(Presentation staging, int index, Slide slide) {
+            if (result.isCancelled()) {
+                throw new CancellationException();
+            }
+            parsed.add(slide);
+            if (drainScheduled.compareAndSet(false, true)) {
+                modelExecutor.execute(() -> {
+                    drain();
+                    report();
+                });
+            }
+        }
+
+        @Override
+        public void slideRemoved(Presentation staging, int index, Slide slide) {
+            // Loaders only add slides
+        }
+
+        @Override
+        public void slidesReplaced(Presentation staging) {
+            replaced = true;
+        }
+
+        /**
+         * Counts the bytes read and stops reading once the load is cancelled
+         */
+        private class ProgressInputStream extends FilterInputStream {
+            ProgressInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                checkCancelled();
+                int value = super.read();
+                if (value >= 0) {
+                    bytesRead++;
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkCancelled();
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    bytesRead += count;
+                }
+                return count;
+            }
+
+            private void checkCancelled() throws InterruptedIOException {
+                if (result.isCancelled()) {
+                    throw new InterruptedIOException("Loading cancelled");
+                }
+            }
+        }
+    }
+}
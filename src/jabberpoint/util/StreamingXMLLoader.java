@@ -0,0 +1,166 @@
+package jabberpoint.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.ImageResolver;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.TextItem;
+
+/**
+ * Loads presentations with a StAX XMLStreamReader instead of a DOM.
+ * Slides are created in a single forward pass and added to the presentation
+ * as soon as their closing tag is read, so no document tree is kept in memory.
+ * Observers are notified once, when the whole file is read.
+ * The result is the same as with XMLLoader.
+ */
+public class StreamingXMLLoader implements PresentationLoader {
+    protected static final String SHOWTITLE = "showtitle";
+    protected static final String SLIDETITLE = "title";
+    protected static final String SLIDE = "slide";
+    protected static final String ITEM = "item";
+    protected static final String LEVEL = "level";
+    protected static final String KIND = "kind";
+    protected static final String TEXT = "text";
+    protected static final String IMAGE = "image";
+    protected static final String UNKNOWNTYPE = "Unknown Element type";
+    protected static final String NFE = "Number Format Exception";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final XMLInputFactory factory;
+    private final ImageResolver imageResolver;
+
+    public StreamingXMLLoader() {
+        this(ImageResolver.FILES);
+    }
+
+    /**
+     * @param imageResolver Finds the images of image items
+     */
+    public StreamingXMLLoader(ImageResolver imageResolver) {
+        this.factory = createInputFactory();
+        this.imageResolver = imageResolver;
+    }
+
+    /**
+     * Create the StAX factory used for reading presentations
+     * @return A factory that does not read the DTD
+     */
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // The DTD only declares the structure; skipping it avoids reading another file
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    @Override
+    public void loadPresentation(Presentation presentation, String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            loadPresentation(presentation, in);
+        }
+    }
+
+    /**
+     * Load a presentation from a stream, for example an entry of an archive
+     * @param presentation The presentation to load into
+     * @param in The XML, which is not closed
+     * @throws IOException If reading fails or the XML is not well-formed
+     */
+    public void loadPresentation(Presentation presentation, InputStream in) throws IOException {
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(
+                    new BufferedInputStream(in, BUFFER_SIZE));
+            presentation.beginUpdate();
+            try {
+                readPresentation(reader, presentation);
+            } finally {
+                presentation.endUpdate();
+                reader.close();
+            }
+        } catch (XMLStreamException xse) {
+            // A truncated or malformed file must not look like a complete presentation
+            throw new IOException(xse.getMessage(), xse);
+        }
+    }
+
+    private void readPresentation(XMLStreamReader reader, Presentation presentation)
+            throws XMLStreamException {
+        boolean titleRead = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (SHOWTITLE.equals(name) && !titleRead) {
+                    presentation.setTitle(reader.getElementText());
+                    titleRead = true;
+                } else if (SLIDE.equals(name)) {
+                    presentation.addSlide(readSlide(reader, imageResolver));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read one slide. The reader must be positioned on the start of a slide
+     * element and is left on its end.
+     * @param reader The reader to read from
+     * @param imageResolver Finds the images of image items
+     * @return The slide
+     * @throws XMLStreamException If the XML is not well-formed
+     */
+    static Slide readSlide(XMLStreamReader reader, ImageResolver imageResolver)
+            throws XMLStreamException {
+        Slide slide = new Slide();
+        boolean slideTitleRead = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (SLIDETITLE.equals(name) && !slideTitleRead) {
+                    slide.setTitle(reader.getElementText());
+                    slideTitleRead = true;
+                } else if (ITEM.equals(name)) {
+                    loadSlideItem(slide, reader, imageResolver);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && SLIDE.equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        return slide;
+    }
+
+    private static void loadSlideItem(Slide slide, XMLStreamReader reader,
+            ImageResolver imageResolver) throws XMLStreamException {
+        int level = 1;
+        String leveltext = reader.getAttributeValue(null, LEVEL);
+        if (leveltext != null) {
+            try {
+                level = Integer.parseInt(leveltext);
+            } catch (NumberFormatException nfe) {
+                System.err.println(NFE);
+            }
+        }
+
+        String type = reader.getAttributeValue(null, KIND);
+        String content = reader.getElementText();
+        if (TEXT.equals(type)) {
+            slide.append(new TextItem(level, content));
+        } else if (IMAGE.equals(type)) {
+            slide.append(new BitmapItem(level, content, imageResolver));
+        } else {
+            System.err.println(UNKNOWNTYPE);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package jabberpoint.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -24,7 +29,7 @@ import jabberpoint.model.TextItem;
  * XMLAccessor for loading and saving presentations in XML format
  * @author JabberPoint team
  */
-public class XMLAccessor implements PresentationLoader {
+public class XMLAccessor implements PresentationLoader, PresentationSaver {
     protected static final String DEFAULT_API_TO_USE = "dom";
     protected static final String SHOWTITLE = "showtitle";
     protected static final String SLIDETITLE = "title";
@@ -42,6 +47,8 @@ public class XMLAccessor implements PresentationLoader {
     protected static final String PRESENTATION_OPENING_TAG = "<?xml version=\"1.0\"?>\n<!DOCTYPE presentation SYSTEM \"presentation.dtd\">\n<presentation>";
     protected static final String PRESENTATION_CLOSING_TAG = "</presentation>";
     protected static final String INDENTATION = "    ";
+    protected static final String NEWLINE = "\n";
+    private static final int BUFFER_SIZE = 256 * 1024;
 
     @Override
     public void loadPresentation(Presentation presentation, String filename) throws IOException {
@@ -50,24 +57,30 @@ public class XMLAccessor implements PresentationLoader {
             Document document = builder.parse(new File(filename));
             Element doc = document.getDocumentElement();
             
-            NodeList titles = doc.getElementsByTagName(SHOWTITLE);
-            String title = titles.item(0).getTextContent();
-            presentation.setTitle(title);
+            // Notify observers once for the whole presentation
+            presentation.beginUpdate();
+            try {
+                NodeList titles = doc.getElementsByTagName(SHOWTITLE);
+                String title = titles.item(0).getTextContent();
+                presentation.setTitle(title);
             
-            NodeList slides = doc.getElementsByTagName(SLIDE);
-            for (int slideNumber = 0; slideNumber < slides.getLength(); slideNumber++) {
-                Element xmlSlide = (Element) slides.item(slideNumber);
-                Slide slide = new Slide();
+                NodeList slides = doc.getElementsByTagName(SLIDE);
+                for (int slideNumber = 0; slideNumber < slides.getLength(); slideNumber++) {
+                    Element xmlSlide = (Element) slides.item(slideNumber);
+                    Slide slide = new Slide();
                 
-                NodeList slideTitle = xmlSlide.getElementsByTagName(SLIDETITLE);
-                slide.setTitle(slideTitle.item(0).getTextContent());
+                    NodeList slideTitle = xmlSlide.getElementsByTagName(SLIDETITLE);
+                    slide.setTitle(slideTitle.item(0).getTextContent());
                 
-                NodeList items = xmlSlide.getElementsByTagName(ITEM);
-                for (int itemNumber = 0; itemNumber < items.getLength(); itemNumber++) {
-                    Element item = (Element) items.item(itemNumber);
-                    loadSlideItem(slide, item);
+                    NodeList items = xmlSlide.getElementsByTagName(ITEM);
+                    for (int itemNumber = 0; itemNumber < items.getLength(); itemNumber++) {
+                        Element item = (Element) items.item(itemNumber);
+                        loadSlideItem(slide, item);
+                    }
+                    presentation.addSlide(slide);
                 }
-                presentation.addSlide(slide);
+            } finally {
+                presentation.endUpdate();
             }
         } 
         catch (ParserConfigurationException pce) {
@@ -109,44 +122,115 @@ public class XMLAccessor implements PresentationLoader {
      * @param filename the filename to save to
      * @throws IOException if saving fails
      */
+    @Override
     public void savePresentation(Presentation presentation, String filename) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
-            out.println(PRESENTATION_OPENING_TAG);
-            out.println(INDENTATION + "<" + SHOWTITLE + ">" + presentation.getTitle() + "</" + SHOWTITLE + ">");
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                Writer out = new BufferedWriter(Channels.newWriter(channel,
+                        StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE)) {
+            writePresentation(presentation, out);
+        }
+    }
+    
+    /**
+     * Writes a presentation as XML. Text is escaped, so titles and items
+     * may contain any characters.
+     * @param presentation the presentation to write
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void writePresentation(Presentation presentation, Writer out) throws IOException {
+        out.write(PRESENTATION_OPENING_TAG);
+        out.write(NEWLINE);
+        writeElement(out, INDENTATION, SHOWTITLE, presentation.getTitle());
+        
+        for (int slideNumber = 0; slideNumber < presentation.getSize(); slideNumber++) {
+            Slide slide = PresentationSaver.getSlideToSave(presentation, slideNumber);
+            out.write(INDENTATION);
+            out.write("<" + SLIDE + ">" + NEWLINE);
+            writeElement(out, INDENTATION + INDENTATION, SLIDETITLE, slide.getTitle());
             
-            for (int slideNumber = 0; slideNumber < presentation.getSize(); slideNumber++) {
-                Slide slide = presentation.getSlide(slideNumber);
-                out.println(INDENTATION + "<" + SLIDE + ">");
-                out.println(INDENTATION + INDENTATION + "<" + SLIDETITLE + ">" + slide.getTitle() + "</" + SLIDETITLE + ">");
-                
-                for (int itemNumber = 0; itemNumber < slide.getSize(); itemNumber++) {
-                    SlideItem item = slide.getSlideItem(itemNumber);
-                    saveSlideItem(out, item);
-                }
-                out.println(INDENTATION + "</" + SLIDE + ">");
+            for (int itemNumber = 0; itemNumber < slide.getSize(); itemNumber++) {
+                SlideItem item = slide.getSlideItem(itemNumber);
+                saveSlideItem(out, item);
             }
-            
-            out.println(PRESENTATION_CLOSING_TAG);
+            out.write(INDENTATION);
+            out.write("</" + SLIDE + ">" + NEWLINE);
         }
+        
+        out.write(PRESENTATION_CLOSING_TAG);
+        out.write(NEWLINE);
+    }
+    
+    private void writeElement(Writer out, String indentation, String name, String text)
+            throws IOException {
+        out.write(indentation);
+        out.write('<');
+        out.write(name);
+        out.write('>');
+        writeEscaped(out, text);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+        out.write(NEWLINE);
     }
     
-    private void saveSlideItem(PrintWriter out, SlideItem item) {
-        out.print(INDENTATION + INDENTATION + "<" + ITEM);
-        out.print(" " + LEVEL + "=\"" + item.getLevel() + "\"");
+    private void saveSlideItem(Writer out, SlideItem item) throws IOException {
+        out.write(INDENTATION + INDENTATION + "<" + ITEM + " " + LEVEL + "=\"");
+        out.write(Integer.toString(item.getLevel()));
+        out.write('"');
         
         if (item instanceof TextItem) {
-            out.print(" " + KIND + "=\"" + TEXT + "\"");
-            out.println(">" + ((TextItem) item).getText() + "</" + ITEM + ">");
+            out.write(" " + KIND + "=\"" + TEXT + "\">");
+            writeEscaped(out, ((TextItem) item).getText());
+            out.write("</" + ITEM + ">" + NEWLINE);
         } else if (item instanceof BitmapItem) {
-            out.print(" " + KIND + "=\"" + IMAGE + "\"");
+            out.write(" " + KIND + "=\"" + IMAGE + "\">");
             String imagePath = ((BitmapItem) item).getName();
             // Remove the img/ prefix if it exists for storage
             if (imagePath.startsWith("img/")) {
                 imagePath = imagePath.substring(4);
             }
-            out.println(">" + imagePath + "</" + ITEM + ">");
+            writeEscaped(out, imagePath);
+            out.write("</" + ITEM + ">" + NEWLINE);
         } else {
-            out.println("/>");
+            out.write("/>" + NEWLINE);
+        }
+    }
+    
+    /**
+     * Writes text with the characters that have a meaning in XML escaped
+     * @param out the writer to write to
+     * @param text the text, may be null
+     * @throws IOException if writing fails
+     */
+    static void writeEscaped(Writer out, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int start = 0;
+        for (int index = 0; index < text.length(); index++) {
+            String entity;
+            switch (text.charAt(index)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                default:
+                    continue;
+            }
+            out.write(text, start, index - start);
+            out.write(entity);
+            start = index + 1;
         }
+        out.write(text, start, text.length() - start);
     }
 }
@@ -38,24 +38,30 @@ public class XMLLoader implements PresentationLoader {
             Document document = builder.parse(new File(filename));
             Element doc = document.getDocumentElement();
             
-            NodeList titles = doc.getElementsByTagName(SHOWTITLE);
-            String title = titles.item(0).getTextContent();
-            presentation.setTitle(title);
+            // Notify observers once for the whole presentation
+            presentation.beginUpdate();
+            try {
+                NodeList titles = doc.getElementsByTagName(SHOWTITLE);
+                String title = titles.item(0).getTextContent();
+                presentation.setTitle(title);
             
-            NodeList slides = doc.getElementsByTagName(SLIDE);
-            for (int slideNumber = 0; slideNumber < slides.getLength(); slideNumber++) {
-                Element xmlSlide = (Element) slides.item(slideNumber);
-                Slide slide = new Slide();
+                NodeList slides = doc.getElementsByTagName(SLIDE);
+                for (int slideNumber = 0; slideNumber < slides.getLength(); slideNumber++) {
+                    Element xmlSlide = (Element) slides.item(slideNumber);
+                    Slide slide = new Slide();
                 
-                NodeList slideTitle = xmlSlide.getElementsByTagName(SLIDETITLE);
-                slide.setTitle(slideTitle.item(0).getTextContent());
+                    NodeList slideTitle = xmlSlide.getElementsByTagName(SLIDETITLE);
+                    slide.setTitle(slideTitle.item(0).getTextContent());
                 
-                NodeList items = xmlSlide.getElementsByTagName(ITEM);
-                for (int itemNumber = 0; itemNumber < items.getLength(); itemNumber++) {
-                    Element item = (Element) items.item(itemNumber);
-                    loadSlideItem(slide, item);
+                    NodeList items = xmlSlide.getElementsByTagName(ITEM);
+                    for (int itemNumber = 0; itemNumber < items.getLength(); itemNumber++) {
+                        Element item = (Element) items.item(itemNumber);
+                        loadSlideItem(slide, item);
+                    }
+                    presentation.addSlide(slide);
                 }
-                presentation.addSlide(slide);
+            } finally {
+                presentation.endUpdate();
             }
         } 
         catch (ParserConfigurationException pce) {
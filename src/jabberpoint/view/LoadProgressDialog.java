@@ -0,0 +1,99 @@
+package jabberpoint.view;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
+/**
+ * Shows how far a presentation has been loaded, with a button to stop
+ * loading. A modeless dialog does not block the frame behind it, so the
+ * slides that are already loaded can be viewed.
+ */
+public class LoadProgressDialog extends JDialog {
+    private static final long serialVersionUID = 3227L;
+
+    private static final String LOADING = "Loading ";
+    private static final String CANCEL = "Cancel";
+    private static final String SLIDES_LOADED = " slides loaded";
+    private static final int STEPS = 1000;
+
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private Runnable cancelAction;
+
+    /**
+     * Create a modeless dialog
+     * @param parent The frame the dialog belongs to
+     * @param source The name of the file being loaded
+     */
+    public LoadProgressDialog(Frame parent, String source) {
+        this(parent, source, false);
+    }
+
+    /**
+     * @param parent The frame the dialog belongs to
+     * @param source The name of the source being loaded
+     * @param modal Whether the frame is blocked until loading ends
+     */
+    public LoadProgressDialog(Frame parent, String source, boolean modal) {
+        super(parent, LOADING + source, modal);
+
+        progressBar = new JProgressBar(0, STEPS);
+        progressBar.setIndeterminate(true);
+        statusLabel = new JLabel(LOADING + source);
+
+        JButton cancelButton = new JButton(CANCEL);
+        cancelButton.addActionListener(e -> cancel());
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(statusLabel, BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.EAST);
+        getContentPane().add(panel);
+
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                cancel();
+            }
+        });
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * @param cancelAction Called when the user stops loading
+     */
+    public void setCancelAction(Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
+    /**
+     * Show the progress of the load. Matches ProgressiveLoader.ProgressListener.
+     * @param slidesLoaded The number of slides loaded so far
+     * @param bytesRead The number of bytes read so far
+     * @param totalBytes The size of the file
+     */
+    public void setProgress(int slidesLoaded, long bytesRead, long totalBytes) {
+        if (totalBytes > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) (STEPS * Math.min(bytesRead, totalBytes) / totalBytes));
+        }
+        statusLabel.setText(slidesLoaded + SLIDES_LOADED);
+    }
+
+    private void cancel() {
+        if (cancelAction != null) {
+            cancelAction.run();
+        }
+        dispose();
+    }
+}
@@ -107,34 +107,31 @@ public class SlideEditorPanel extends JPanel {
         Slide currentSlide = presentation.getCurrentSlide();
         if (currentSlide != null) {
             currentSlide.setTitle(titleField.getText());
-            presentation.notifyObservers();
+            presentation.slideChanged(presentation.getSlideNumber());
         }
     }
     
     private void addItemToCurrentSlide() {
-        Slide currentSlide = presentation.getCurrentSlide();
-        if (currentSlide == null) {
+        if (presentation.getCurrentSlide() == null) {
             // Create a new slide if one doesn't exist
             createNewSlide();
-            currentSlide = presentation.getCurrentSlide();
         }
         
         String type = (String) itemTypeCombo.getSelectedItem();
         String content = itemContentField.getText();
         int level = (Integer) levelCombo.getSelectedItem();
         
+        int slideNumber = presentation.getSlideNumber();
         switch (type) {
             case "Text":
-                currentSlide.append(new TextItem(level, content));
+                presentation.appendItem(slideNumber, new TextItem(level, content));
                 break;
                 
             case "Image":
-                currentSlide.append(new BitmapItem(level, content));
+                presentation.appendItem(slideNumber, new BitmapItem(level, content));
                 break;
         }
         
-        presentation.notifyObservers();
-        
         // Reset content field
         itemContentField.setText("");
     }
@@ -142,8 +139,10 @@ public class SlideEditorPanel extends JPanel {
     private void createNewSlide() {
         Slide newSlide = new Slide();
         newSlide.setTitle("New Slide");
-        presentation.addSlide(newSlide);
-        presentation.setSlideNumber(presentation.getSize() - 1);
+        presentation.batch(() -> {
+            presentation.addSlide(newSlide);
+            presentation.setSlideNumber(presentation.getSize() - 1);
+        });
         
         // Update editor with new slide
         updateEditorFromCurrentSlide();
@@ -0,0 +1,289 @@
+package jabberpoint.view;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEvent;
+import jabberpoint.model.PresentationListener;
+import jabberpoint.model.PresentationObserver;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideLayout;
+import jabberpoint.model.SlideSnapshot;
+
+/**
+ * Renders the slides around the current slide on a background thread, so
+ * that navigating with nextSlide() and previousSlide() finds the slide
+ * already rendered. Rendered slides are kept in an LRU cache bounded by
+ * a memory budget. Slides that are removed or replaced are dropped from
+ * the cache right away. The background thread renders copies of the slides
+ * taken while the presentation is locked, so it never reads a slide that is
+ * being edited; a rendered slide is only used while the slide keeps the
+ * revision it was copied at.
+ */
+public class SlidePrefetcher implements PresentationObserver, PresentationListener {
+    /** The number of slides rendered ahead of the current slide */
+    public static final int DEFAULT_DEPTH = 2;
+    /** The number of bytes of rendered slides to keep */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final Map<Slide, RenderedSlide> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Presentation presentation;
+    private final ExecutorService executor;
+    private int depth;
+    private long memoryBudget;
+    private long residentBytes;
+    private Dimension viewportSize;
+    private int lastSlideNumber = -1;
+    private int lastSize = -1;
+    private int generation;
+    private long hits;
+    private long misses;
+
+    public SlidePrefetcher(Presentation presentation) {
+        this(presentation, DEFAULT_DEPTH, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Create a prefetcher for a presentation
+     * @param presentation The presentation to observe
+     * @param depth The number of slides to render ahead of the current slide
+     * @param memoryBudget The maximum number of bytes used by rendered slides
+     */
+    public SlidePrefetcher(Presentation presentation, int depth, long memoryBudget) {
+        this.presentation = presentation;
+        this.depth = depth;
+        this.memoryBudget = memoryBudget;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JabberPoint slide prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        presentation.addObserver(this);
+        presentation.addPresentationListener(this);
+    }
+
+    @Override
+    public void presentationChanged(PresentationEvent event) {
+        if (event instanceof PresentationEvent.SlideRemoved) {
+            evict(((PresentationEvent.SlideRemoved) event).getSlide());
+        } else if (event instanceof PresentationEvent.SlideReplaced) {
+            evict(((PresentationEvent.SlideReplaced) event).getOldSlide());
+        } else if (event instanceof PresentationEvent.SlidesReplaced) {
+            clear();
+        }
+    }
+
+    private synchronized void evict(Slide slide) {
+        RenderedSlide rendered = cache.remove(slide);
+        if (rendered != null) {
+            residentBytes -= rendered.bytes;
+        }
+    }
+
+    @Override
+    public void update(Presentation presentation, Slide slide) {
+        int slideNumber = presentation.getSlideNumber();
+        int size = presentation.getSize();
+        synchronized (this) {
+            if (slideNumber == lastSlideNumber && size == lastSize) {
+                return;
+            }
+            lastSlideNumber = slideNumber;
+            lastSize = size;
+        }
+        schedule(presentation);
+    }
+
+    /**
+     * Set the size slides are rendered at. Cached slides of another size are discarded.
+     * @param presentation The presentation to prefetch from
+     * @param width The width of the viewer
+     * @param height The height of the viewer
+     */
+    public void setViewportSize(Presentation presentation, int width, int height) {
+        synchronized (this) {
+            Dimension size = new Dimension(width, height);
+            if (size.equals(viewportSize)) {
+                return;
+            }
+            viewportSize = size;
+            clear();
+        }
+        schedule(presentation);
+    }
+
+    private void schedule(Presentation presentation) {
+        final Dimension size;
+        final int jobGeneration;
+        List<Slide> slides = new ArrayList<>();
+        List<SlideSnapshot> copies = new ArrayList<>();
+        synchronized (this) {
+            if (viewportSize == null || viewportSize.width <= 0 || viewportSize.height <= 0) {
+                return;
+            }
+            size = viewportSize;
+            jobGeneration = ++generation;
+            int current = presentation.getSlideNumber();
+            addSlide(slides, presentation, current - 1);
+            for (int offset = 1; offset <= depth; offset++) {
+                addSlide(slides, presentation, current + offset);
+            }
+        }
+        for (Slide slide : slides) {
+            copies.add(presentation.snapshotSlide(slide));
+        }
+        executor.execute(() -> prefetch(slides, copies, size, jobGeneration));
+    }
+
+    private static void addSlide(List<Slide> slides, Presentation presentation, int number) {
+        Slide slide = presentation.getSlide(number);
+        if (slide != null) {
+            slides.add(slide);
+        }
+    }
+
+    private void prefetch(List<Slide> slides, List<SlideSnapshot> copies, Dimension size,
+            int jobGeneration) {
+        for (int index = 0; index < slides.size(); index++) {
+            Slide slide = slides.get(index);
+            SlideSnapshot copy = copies.get(index);
+            synchronized (this) {
+                if (jobGeneration != generation) {
+                    return;
+                }
+                RenderedSlide cached = cache.get(slide);
+                if (cached != null && cached.matches(copy.getRevision(), size.width, size.height)) {
+                    continue;
+                }
+            }
+            BufferedImage image = new BufferedImage(size.width, size.height,
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            try {
+                Rectangle area = new Rectangle(0, 0, size.width, size.height);
+                SlideLayout layout = copy.toSlide().getLayout(g2d, area, null);
+                SlideViewerComponent.renderSlide(g2d, layout, size.width, size.height, null);
+                store(slide, new RenderedSlide(copy.getRevision(), image));
+            } finally {
+                g2d.dispose();
+            }
+        }
+    }
+
+    private synchronized void store(Slide slide, RenderedSlide rendered) {
+        RenderedSlide previous = cache.put(slide, rendered);
+        if (previous != null) {
+            residentBytes -= previous.bytes;
+        }
+        residentBytes += rendered.bytes;
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        Iterator<RenderedSlide> iterator = cache.values().iterator();
+        while (residentBytes > memoryBudget && iterator.hasNext()) {
+            residentBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Get a prerendered image of a slide
+     * @param slide The slide to look up
+     * @param layout The current layout of the slide
+     * @return The rendered slide, or null if it is not cached for the size
+     *     of the layout or the slide changed since it was rendered
+     */
+    public synchronized BufferedImage getRendered(Slide slide, SlideLayout layout) {
+        RenderedSlide rendered = cache.get(slide);
+        Rectangle area = layout.getArea();
+        if (rendered == null || !rendered.matches(slide.getRevision(), area.width, area.height)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return rendered.image;
+    }
+
+    /**
+     * Discard all prerendered slides
+     */
+    public synchronized void clear() {
+        cache.clear();
+        residentBytes = 0;
+    }
+
+    /**
+     * Stop the background thread and stop observing the presentation
+     */
+    public void shutdown() {
+        presentation.removeObserver(this);
+        presentation.removePresentationListener(this);
+        executor.shutdownNow();
+        clear();
+    }
+
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    public synchronized void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evictOverBudget();
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public synchronized int getCachedSlideCount() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * A slide rendered at a particular revision and size
+     */
+    private static final class RenderedSlide {
+        private final int revision;
+        private final BufferedImage image;
+        private final long bytes;
+
+        RenderedSlide(int revision, BufferedImage image) {
+            this.revision = revision;
+            this.image = image;
+            this.bytes = (long) image.getWidth() * image.getHeight() * BYTES_PER_PIXEL;
+        }
+
+        boolean matches(int slideRevision, int width, int height) {
+            return revision == slideRevision && image.getWidth() == width
+                    && image.getHeight() == height;
+        }
+    }
+}
@@ -4,34 +4,68 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 
+import jabberpoint.model.ObserverDispatch;
 import jabberpoint.model.Presentation;
+import jabberpoint.model.PresentationEvent;
+import jabberpoint.model.PresentationListener;
 import jabberpoint.model.Slide;
+import jabberpoint.model.SlideLayout;
 import jabberpoint.model.PresentationObserver;
 
 /** 
  * JabberPoint SlideViewerComponent
  * This class represents the presentation viewer component.
+ * The current slide is rendered into a back buffer, which is only redrawn
+ * when the slide, its layout or the component size changes. The change
+ * events received before an update decide what is repainted: a change to
+ * another slide only repaints the slide counter, and a title change only
+ * updates the frame title.
  */
-public class SlideViewerComponent extends JComponent implements PresentationObserver {
+public class SlideViewerComponent extends JComponent
+        implements PresentationObserver, PresentationListener {
     private static final long serialVersionUID = 227L;
     private static final int XPOS = 1100;
     private static final int YPOS = 20;
+    private static final int LABEL_DESCENT = 5;
     private static final Color BACKGROUND_COLOR = Color.WHITE;
     private static final Color TEXT_COLOR = Color.BLACK;
+    // Kinds of change recorded between updates
+    private static final int EVENTS_SEEN = 1;
+    private static final int SLIDE_CHANGED = 2;
+    private static final int LABEL_CHANGED = 4;
+    private static final int TITLE_CHANGED = 8;
 
     private Slide slide;
     private Font labelFont;
     private Presentation presentation;
     private JFrame frame;
+    
+    private VolatileImage volatileBuffer;
+    private BufferedImage bufferedBuffer;
+    private Slide renderedSlide;
+    private SlideLayout renderedLayout;
+    private int renderCount;
+    private SlidePrefetcher prefetcher;
+    // Changes seen since the last update; an update without events repaints everything.
+    // Events arrive on the changing thread and updates may run later on the event thread.
+    private final AtomicInteger changes = new AtomicInteger();
 
     public SlideViewerComponent(Presentation pres) {
         this.presentation = pres;
         this.labelFont = new Font("Dialog", Font.BOLD, 10);
         this.presentation.addObserver(this);
+        this.presentation.addPresentationListener(this);
         this.slide = null;
         update(presentation, null);
     }
@@ -40,6 +74,7 @@ public class SlideViewerComponent extends JComponent implements PresentationObse
         this.presentation = pres;
         this.labelFont = new Font("Dialog", Font.BOLD, 10);
         this.presentation.addObserver(this);
+        this.presentation.addPresentationListener(this);
         this.slide = null;
         this.frame = frame;
         update(presentation, null);
@@ -48,13 +83,57 @@ public class SlideViewerComponent extends JComponent implements PresentationObse
     public Slide getSlide() {
         return slide;
     }
+    
+    /**
+     * Set the prefetcher used to look up slides rendered in the background
+     * @param prefetcher The prefetcher, or null to always render on paint
+     */
+    public void setPrefetcher(SlidePrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+    
+    public SlidePrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+    
+    /**
+     * Get the number of times the slide was rendered into the back buffer
+     * @return The render count
+     */
+    public int getRenderCount() {
+        return renderCount;
+    }
+
+    /**
+     * The component paints, so it is notified on the event thread
+     */
+    @Override
+    public ObserverDispatch getDispatch() {
+        return ObserverDispatch.EVENT_THREAD;
+    }
+
+    @Override
+    public void presentationChanged(PresentationEvent event) {
+        int change;
+        if (event instanceof PresentationEvent.TitleChanged) {
+            change = TITLE_CHANGED;
+        } else if (event.affectsSlide(event.getPresentation().getSlideNumber())) {
+            change = SLIDE_CHANGED;
+        } else {
+            change = LABEL_CHANGED;
+        }
+        changes.accumulateAndGet(EVENTS_SEEN | change, (seen, added) -> seen | added);
+    }
 
     @Override
     public void update(Presentation presentation, Slide slide) {
         if (this.presentation != presentation) {
             this.presentation = presentation;
         }
+        // Changes recorded after this are left for the update that follows them
+        int changed = changes.getAndSet(0);
         
+        Slide previous = this.slide;
         this.slide = slide;
         
         // If no slide was provided, get the current slide from presentation
@@ -62,9 +141,14 @@ public class SlideViewerComponent extends JComponent implements PresentationObse
             this.slide = presentation.getSlide(presentation.getSlideNumber());
         }
         
-        repaint();
+        boolean everything = (changed & EVENTS_SEEN) == 0;
+        if (everything || (changed & SLIDE_CHANGED) != 0 || this.slide != previous) {
+            repaint();
+        } else if ((changed & LABEL_CHANGED) != 0) {
+            repaint(XPOS, 0, Math.max(0, getWidth() - XPOS), YPOS + LABEL_DESCENT);
+        }
         
-        if (frame != null) {
+        if (frame != null && (everything || (changed & TITLE_CHANGED) != 0)) {
             frame.setTitle(presentation.getTitle());
         }
     }
@@ -78,13 +162,96 @@ public class SlideViewerComponent extends JComponent implements PresentationObse
             return;
         }
         
-        g.setColor(BACKGROUND_COLOR);
-        g.fillRect(0, 0, getWidth(), getHeight());
+        if (getWidth() > 0 && getHeight() > 0) {
+            if (prefetcher != null) {
+                prefetcher.setViewportSize(presentation, getWidth(), getHeight());
+            }
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (gc != null) {
+                paintVolatileBuffer(g, gc);
+            } else {
+                paintBufferedBuffer(g);
+            }
+        }
+        
         g.setColor(TEXT_COLOR);
         g.setFont(labelFont);
         g.drawString("Slide " + (1 + presentation.getSlideNumber()) + " of " + presentation.getSize(), XPOS, YPOS);
-
-        slide.draw(g, getSlideBounds(), this);
+    }
+    
+    private void paintVolatileBuffer(Graphics g, GraphicsConfiguration gc) {
+        do {
+            boolean contentsLost = false;
+            if (volatileBuffer == null || volatileBuffer.getWidth() != getWidth()
+                    || volatileBuffer.getHeight() != getHeight()) {
+                volatileBuffer = createVolatileBuffer(gc);
+                contentsLost = true;
+            }
+            int status = volatileBuffer.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                volatileBuffer = createVolatileBuffer(gc);
+                contentsLost = true;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                contentsLost = true;
+            }
+            renderIfNeeded(volatileBuffer, contentsLost);
+            g.drawImage(volatileBuffer, 0, 0, this);
+        } while (volatileBuffer.contentsLost());
+    }
+    
+    private VolatileImage createVolatileBuffer(GraphicsConfiguration gc) {
+        if (volatileBuffer != null) {
+            volatileBuffer.flush();
+        }
+        return gc.createCompatibleVolatileImage(getWidth(), getHeight());
+    }
+    
+    private void paintBufferedBuffer(Graphics g) {
+        boolean contentsLost = false;
+        if (bufferedBuffer == null || bufferedBuffer.getWidth() != getWidth()
+                || bufferedBuffer.getHeight() != getHeight()) {
+            bufferedBuffer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            contentsLost = true;
+        }
+        renderIfNeeded(bufferedBuffer, contentsLost);
+        g.drawImage(bufferedBuffer, 0, 0, this);
+    }
+    
+    private void renderIfNeeded(Image buffer, boolean contentsLost) {
+        Graphics2D g2d = (Graphics2D) buffer.getGraphics();
+        try {
+            SlideLayout layout = slide.getLayout(g2d, getSlideBounds(), this);
+            if (!contentsLost && slide == renderedSlide && layout == renderedLayout) {
+                return;
+            }
+            BufferedImage prerendered = prefetcher == null
+                    ? null : prefetcher.getRendered(slide, layout);
+            if (prerendered != null) {
+                g2d.drawImage(prerendered, 0, 0, this);
+            } else {
+                renderSlide(g2d, layout, getWidth(), getHeight(), this);
+                renderCount++;
+            }
+            renderedSlide = slide;
+            renderedLayout = layout;
+        } finally {
+            g2d.dispose();
+        }
+    }
+    
+    /**
+     * Render a slide layout on a blank background
+     * @param g2d The graphics to render on
+     * @param layout The layout of the slide
+     * @param width The width of the area to clear
+     * @param height The height of the area to clear
+     * @param view The observer for images
+     */
+    static void renderSlide(Graphics2D g2d, SlideLayout layout, int width, int height,
+            ImageObserver view) {
+        g2d.setColor(BACKGROUND_COLOR);
+        g2d.fillRect(0, 0, width, height);
+        layout.paint(g2d, view);
     }
 
     @Override
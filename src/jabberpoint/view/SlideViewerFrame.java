@@ -23,27 +23,32 @@ public class SlideViewerFrame extends JFrame {
     private static final int PREFERRED_HEIGHT = 800;
     
     private SlideViewerComponent slideViewComponent;
+    private MenuController menuController;
 
     public SlideViewerFrame(Presentation presentation) {
         super(JABTITLE);
         
         slideViewComponent = new SlideViewerComponent(presentation);
+        slideViewComponent.setPrefetcher(new SlidePrefetcher(presentation));
         presentation.setSlideNumber(0);
         
         setupWindow();
         addKeyListener(new KeyController(presentation));
-        setMenuBar(new MenuController(this, presentation));
+        menuController = new MenuController(this, presentation);
+        setMenuBar(menuController);
     }
     
     public SlideViewerFrame(String title, Presentation presentation) {
         super(title);
         
         slideViewComponent = new SlideViewerComponent(presentation);
+        slideViewComponent.setPrefetcher(new SlidePrefetcher(presentation));
         presentation.setSlideNumber(0);
         
         setupWindow();
         addKeyListener(new KeyController(presentation));
-        setMenuBar(new MenuController(this, presentation));
+        menuController = new MenuController(this, presentation);
+        setMenuBar(menuController);
     }
     
     private void setupWindow() {
@@ -82,7 +87,24 @@ public class SlideViewerFrame extends JFrame {
         return panel;
     }
     
+    /**
+     * Stop prefetching slides for this frame when it is closed
+     */
+    @Override
+    public void dispose() {
+        SlidePrefetcher prefetcher = slideViewComponent.getPrefetcher();
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+            slideViewComponent.setPrefetcher(null);
+        }
+        super.dispose();
+    }
+    
     public SlideViewerComponent getSlideViewerComponent() {
         return slideViewComponent;
     }
+    
+    public MenuController getMenuController() {
+        return menuController;
+    }
 }
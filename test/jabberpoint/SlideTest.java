@@ -9,11 +9,13 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Font;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.util.List;
 
 import jabberpoint.model.Slide;
 import jabberpoint.model.SlideItem;
+import jabberpoint.model.SlideLayout;
 import jabberpoint.model.TextItem;
 import jabberpoint.model.Style;
 
@@ -92,6 +94,8 @@ public class SlideTest {
         slide.append(item);
         items = slide.getSlideItems();
         assertEquals(1, items.size());
+        List<SlideItem> view = items;
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
     }
     
     @Test
@@ -138,4 +142,59 @@ public class SlideTest {
         slide.append(item);
         assertEquals(item, slide.getSlideItem(0), "Should return the correct item at valid index");
     }
+    
+    @Test
+    public void testLayoutIsCachedPerArea() {
+        Graphics2D g = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            slide.append(new TextItem(1, "Item 1"));
+            Rectangle area = new Rectangle(0, 0, 1200, 800);
+            
+            SlideLayout layout = slide.getLayout(g, area, null);
+            assertSame(layout, slide.getLayout(g, new Rectangle(area), null),
+                    "Same area should reuse the cached layout");
+            assertNotSame(layout, slide.getLayout(g, new Rectangle(0, 0, 600, 400), null),
+                    "A different area should produce a new layout");
+        } finally {
+            g.dispose();
+        }
+    }
+    
+    @Test
+    public void testLayoutInvalidatedBySlideChanges() {
+        Graphics2D g = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            Rectangle area = new Rectangle(0, 0, 1200, 800);
+            SlideLayout layout = slide.getLayout(g, area, null);
+            
+            slide.append(new TextItem(1, "Item 1"));
+            SlideLayout afterAppend = slide.getLayout(g, area, null);
+            assertNotSame(layout, afterAppend);
+            assertEquals(1, afterAppend.getItems().size());
+            
+            slide.setTitle("Other Title");
+            assertNotSame(afterAppend, slide.getLayout(g, area, null));
+        } finally {
+            g.dispose();
+        }
+    }
+    
+    @Test
+    public void testLayoutStacksItemsVertically() {
+        Graphics2D g = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            slide.append(new TextItem(1, "Item 1"));
+            slide.append(new TextItem(2, "Item 2"));
+            SlideLayout layout = slide.getLayout(g, new Rectangle(0, 0, 1200, 800), null);
+            
+            List<SlideLayout.Entry> entries = layout.getItems();
+            assertEquals(0, layout.getTitle().getY());
+            assertEquals(layout.getTitle().getBounds().height, entries.get(0).getY());
+            assertEquals(entries.get(0).getY() + entries.get(0).getBounds().height,
+                    entries.get(1).getY());
+            assertEquals(1.0f, layout.getScale());
+        } finally {
+            g.dispose();
+        }
+    }
 }
@@ -219,8 +219,8 @@ public class MenuControllerTest {
             // Verify DemoLoader was set as the loader strategy
             verify(mockContext).setLoaderStrategy(any(DemoLoader.class));
             
-            // Verify loadPresentation was called
-            verify(mockContext).loadPresentation(eq(mockPresentation), anyString());
+            // Verify the presentation was loaded in the background
+            verify(mockContext).loadAsync(anyString());
         } catch (Exception e) {
             fail("Exception should not be thrown: " + e.getMessage());
         }
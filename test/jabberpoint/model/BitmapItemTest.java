@@ -8,6 +8,7 @@ import static org.mockito.Mockito.*;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.awt.Font;
 
@@ -86,6 +87,73 @@ public class BitmapItemTest {
         assertDoesNotThrow(() -> invalidItem.draw(10, 10, 1.0f, mockGraphics, style, mockObserver));
     }
     
+    @Test
+    public void testImageIsDecodedInBackground() {
+        ImageCache.getInstance().clear();
+        BitmapItem item = new BitmapItem(1, "JabberPoint.gif");
+        ImageObserver mockObserver = mock(ImageObserver.class);
+        Graphics2D mockGraphics = mock(Graphics2D.class);
+        int revision = item.getRevision();
+        
+        // The first paint starts the decode and notifies the observer when it is done
+        item.draw(10, 10, 1.0f, mockGraphics, style, mockObserver);
+        verify(mockObserver, timeout(5000)).imageUpdate(any(), eq(ImageObserver.ALLBITS),
+                eq(0), eq(0), anyInt(), anyInt());
+        
+        assertFalse(item.isLoading());
+        assertNotEquals(revision, item.getRevision(), "Layouts should notice the decoded size");
+        Rectangle box = item.getBoundingBox(mockGraphics, mockObserver, 1.0f, style);
+        assertTrue(box.width > 0);
+    }
+    
+    @Test
+    public void testIsLoadingDoesNotStartDecode() {
+        ImageCache.getInstance().clear();
+        long misses = ImageCache.getInstance().getMisses();
+        BitmapItem item = new BitmapItem(1, "JabberPoint.gif");
+
+        assertFalse(item.isLoading());
+        assertEquals(misses, ImageCache.getInstance().getMisses());
+    }
+
+    @Test
+    public void testScaledImagesAreReusedAndBounded() throws InterruptedException {
+        Graphics2D g = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            // A paint at full size starts a full resolution decode, which serves every scale
+            bitmapItem.draw(0, 0, 1.0f, g, style, null);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (bitmapItem.isLoading() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            bitmapItem.clearScaledImages();
+            bitmapItem.draw(0, 0, 0.5f, g, style, null);
+            bitmapItem.draw(0, 0, 0.5f, g, style, null);
+            assertEquals(1, bitmapItem.getScaledImageCount(), "Same scale should reuse the scaled image");
+            
+            bitmapItem.draw(0, 0, 0.25f, g, style, null);
+            bitmapItem.draw(0, 0, 0.75f, g, style, null);
+            assertEquals(BitmapItem.MAX_SCALED_IMAGES, bitmapItem.getScaledImageCount());
+            
+            bitmapItem.clearScaledImages();
+            assertEquals(0, bitmapItem.getScaledImageCount());
+        } finally {
+            g.dispose();
+        }
+    }
+    
+    @Test
+    public void testSubsamplingFollowsScale() {
+        assertEquals(1, BitmapItem.subsamplingFor(1.0f));
+        assertEquals(1, BitmapItem.subsamplingFor(2.0f), "Larger scales need full resolution");
+        assertEquals(1, BitmapItem.subsamplingFor(0.6f));
+        assertEquals(2, BitmapItem.subsamplingFor(0.5f));
+        assertEquals(2, BitmapItem.subsamplingFor(0.3f));
+        assertEquals(4, BitmapItem.subsamplingFor(0.25f));
+        assertEquals(BitmapItem.MAX_SUBSAMPLING, BitmapItem.subsamplingFor(0.001f));
+        assertEquals(1, BitmapItem.subsamplingFor(0.0f));
+    }
+    
     @Test
     public void testToString() {
         // Test that toString returns a non-empty string
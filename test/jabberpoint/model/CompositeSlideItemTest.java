@@ -158,4 +158,17 @@ public class CompositeSlideItemTest {
         assertTrue(fullString.contains("Test Group"));
         assertTrue(fullString.contains("2 items"));
     }
+
+    @Test
+    public void testRemovingChangedChildChangesRevision() {
+        CompositeSlideItem group = new CompositeSlideItem(1, "Group");
+        TextItem child = new TextItem(1, "Before");
+        child.setText("After");
+        group.add(child);
+        int revision = group.getRevision();
+
+        group.remove(child);
+
+        assertNotEquals(revision, group.getRevision());
+    }
 }
@@ -0,0 +1,118 @@
+package jabberpoint.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * Unit test for the ImageCache class
+ */
+public class ImageCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ImageCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ImageCache(ImageCache.DEFAULT_MAX_BYTES);
+    }
+
+    @Test
+    public void testSameFileIsDecodedOnce() throws IOException {
+        String path = writeImage("logo.png", 10, 10);
+
+        BufferedImage first = cache.open(path).getImage();
+        BufferedImage second = cache.open(path).getImage();
+
+        assertSame(first, second, "Both handles should share one decoded image");
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getImageCount());
+        assertEquals(10 * 10 * 4, cache.getResidentBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImageIsEvicted() throws IOException {
+        long imageBytes = 10 * 10 * 4;
+        cache.setMaxBytes(2 * imageBytes);
+        ImageCache.Handle a = cache.open(writeImage("a.png", 10, 10));
+        cache.open(writeImage("b.png", 10, 10));
+        a.getImage();
+        cache.open(writeImage("c.png", 10, 10));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * imageBytes, cache.getResidentBytes());
+
+        long misses = cache.getMisses();
+        a.getImage();
+        assertEquals(misses, cache.getMisses(), "Recently used image should still be cached");
+    }
+
+    @Test
+    public void testEvictedImageIsDecodedAgain() throws IOException {
+        ImageCache.Handle handle = cache.open(writeImage("a.png", 10, 10));
+        cache.clear();
+
+        assertNotNull(handle.getImage());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testModifiedFileIsReloaded() throws IOException {
+        String path = writeImage("a.png", 10, 10);
+        cache.open(path);
+        File file = new File(path);
+        ImageIO.write(new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB), "png", file);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+
+        assertEquals(20, cache.open(path).getImage().getWidth());
+    }
+
+    @Test
+    public void testSizeIsProbedWithoutDecoding() throws IOException {
+        ImageCache.Handle handle = cache.handle(writeImage("wide.png", 30, 10));
+
+        assertEquals(new Dimension(30, 10), handle.getSize());
+        assertNull(handle.peek());
+        assertEquals(0, cache.getMisses(), "Probing the size should not decode the image");
+        assertEquals(0, cache.getImageCount());
+    }
+
+    @Test
+    public void testSubsampledDecode() throws IOException {
+        ImageCache.Handle handle = cache.handle(writeImage("photo.png", 40, 40));
+
+        assertEquals(10, handle.getImage(4).getWidth());
+        assertEquals(20, handle.getImage(2).getWidth(), "A finer subsampling needs a new decode");
+        assertEquals(2, cache.getMisses());
+        assertEquals(new Dimension(40, 40), handle.getSize(), "Size should be the full image size");
+    }
+
+    @Test
+    public void testFinerImageServesCoarserRequest() throws IOException {
+        ImageCache.Handle handle = cache.open(writeImage("photo.png", 40, 40));
+
+        assertEquals(40, handle.getImage(4).getWidth());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testMissingFileThrows() {
+        assertThrows(IOException.class, () -> cache.open(tempDir.resolve("missing.png").toString()));
+    }
+
+    private String writeImage(String name, int width, int height) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+        return file.getPath();
+    }
+}
@@ -0,0 +1,75 @@
+package jabberpoint.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit test for the PersistentVector class
+ */
+public class PersistentVectorTest {
+
+    @Test
+    public void testMatchesArrayListUnderRandomChanges() {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> vector = PersistentVector.empty();
+
+        for (int step = 0; step < 5000; step++) {
+            int operation = random.nextInt(4);
+            if (operation < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, step);
+                vector = vector.plus(index, step);
+            } else if (operation == 2) {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                vector = vector.minus(index);
+            } else {
+                int index = random.nextInt(expected.size());
+                expected.set(index, -step);
+                vector = vector.with(index, -step);
+            }
+        }
+
+        assertEquals(expected, vector);
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        PersistentVector<String> first = PersistentVector.of(List.of("a", "b", "c"));
+        PersistentVector<String> second = first.with(1, "x").plus("d").minus(0);
+
+        assertEquals(List.of("a", "b", "c"), first);
+        assertEquals(List.of("x", "c", "d"), second);
+    }
+
+    @Test
+    public void testTreeStaysBalanced() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int index = 0; index < 10000; index++) {
+            vector = vector.plus(index);
+        }
+        for (int index = 0; index < 5000; index++) {
+            vector = vector.minus(0);
+        }
+
+        assertEquals(5000, vector.size());
+        assertEquals(5000, vector.get(0).intValue());
+        // An AVL tree is at most about 1.44 log2(n) high
+        assertTrue(vector.getHeight() <= 18, "Height " + vector.getHeight());
+    }
+
+    @Test
+    public void testIndexOutOfBounds() {
+        PersistentVector<String> vector = PersistentVector.of(List.of("a"));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.plus(2, "b"));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.minus(-1));
+        assertThrows(UnsupportedOperationException.class, () -> vector.add("b"));
+    }
+}
@@ -0,0 +1,143 @@
+package jabberpoint.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Unit test for the PresentationEventPublisher class
+ */
+public class PresentationEventPublisherTest {
+
+    private Presentation presentation;
+    private PresentationEventPublisher publisher;
+
+    /**
+     * Records what it receives and only requests events when asked to
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<PresentationEvent> {
+        final List<PresentationEvent> events = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(PresentationEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        presentation = new Presentation();
+        for (int slideNumber = 0; slideNumber < 10; slideNumber++) {
+            presentation.addSlide(new Slide());
+        }
+        // Deliver on the calling thread so the test can follow each step
+        publisher = new PresentationEventPublisher(presentation, 4, Runnable::run);
+    }
+
+    @Test
+    public void testEventsFollowDemand() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        presentation.setTitle("One");
+        presentation.addSlide(new Slide());
+        assertTrue(subscriber.events.isEmpty(), "Nothing should be sent without demand");
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        assertTrue(subscriber.events.get(0) instanceof PresentationEvent.TitleChanged);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(2, subscriber.events.size());
+        assertEquals(10, ((PresentationEvent.SlideAdded) subscriber.events.get(1)).getIndex());
+    }
+
+    @Test
+    public void testNavigationIsConflated() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        for (int slideNumber = 1; slideNumber < 10; slideNumber++) {
+            presentation.setSlideNumber(slideNumber);
+        }
+        subscriber.subscription.request(10);
+
+        assertEquals(1, subscriber.events.size());
+        PresentationEvent.NavigationChanged navigation = (PresentationEvent.NavigationChanged) subscriber.events.get(0);
+        assertEquals(0, navigation.getOldSlideNumber());
+        assertEquals(9, navigation.getNewSlideNumber());
+    }
+
+    @Test
+    public void testOverflowIsReplacedBySlidesReplaced() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        for (int slideNumber = 0; slideNumber < 20; slideNumber++) {
+            presentation.setTitle("Title " + slideNumber);
+        }
+        subscriber.subscription.request(10);
+
+        assertTrue(subscriber.events.size() <= 4, "The buffer should stay bounded");
+        assertTrue(subscriber.events.get(0) instanceof PresentationEvent.SlidesReplaced,
+                "Dropped events should be reported as a full change");
+        PresentationEvent last = subscriber.events.get(subscriber.events.size() - 1);
+        assertEquals("Title 19", ((PresentationEvent.TitleChanged) last).getTitle());
+    }
+
+    @Test
+    public void testCancelAndClose() {
+        RecordingSubscriber cancelled = new RecordingSubscriber();
+        RecordingSubscriber open = new RecordingSubscriber();
+        publisher.subscribe(cancelled);
+        publisher.subscribe(open);
+        open.subscription.request(Long.MAX_VALUE);
+
+        cancelled.subscription.cancel();
+        presentation.setTitle("After cancel");
+        publisher.close();
+
+        assertTrue(cancelled.events.isEmpty());
+        assertFalse(cancelled.completed);
+        assertEquals(1, open.events.size());
+        assertTrue(open.completed);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testInvalidRequestSignalsError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testPresentationPublisherIsShared() {
+        assertSame(presentation.getEventPublisher(), presentation.getEventPublisher());
+    }
+}
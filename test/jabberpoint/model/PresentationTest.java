@@ -0,0 +1,552 @@
+package jabberpoint.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for the Presentation class
+ */
+public class PresentationTest {
+
+    private Presentation presentation;
+    private int updates;
+
+    @BeforeEach
+    public void setUp() {
+        presentation = new Presentation();
+        presentation.addObserver((p, slide) -> updates++);
+        updates = 0;
+    }
+
+    @Test
+    public void testBatchNotifiesOnce() {
+        presentation.batch(() -> {
+            for (int slideNumber = 0; slideNumber < 100; slideNumber++) {
+                presentation.addSlide(new Slide());
+            }
+            presentation.setSlideNumber(50);
+            assertEquals(0, updates, "Observers should not be notified during a batch");
+        });
+
+        assertEquals(1, updates);
+        assertEquals(100, presentation.getSize());
+        assertFalse(presentation.isUpdating());
+    }
+
+    @Test
+    public void testNestedUpdatesNotifyAtOutermostEnd() {
+        presentation.beginUpdate();
+        presentation.batch(() -> presentation.addSlide(new Slide()));
+        presentation.addSlide(new Slide());
+        assertEquals(0, updates);
+        assertTrue(presentation.isUpdating());
+
+        presentation.endUpdate();
+        assertEquals(1, updates);
+    }
+
+    @Test
+    public void testEmptyBatchDoesNotNotify() {
+        presentation.batch(() -> { });
+
+        assertEquals(0, updates);
+    }
+
+    @Test
+    public void testEditListenersSeeEveryChangeInBatch() {
+        int[] inserted = new int[1];
+        presentation.addEditListener(new PresentationEditListener() {
+            @Override
+            public void titleChanged(Presentation p, String title) {
+            }
+
+            @Override
+            public void slideInserted(Presentation p, int index, Slide slide) {
+                inserted[0]++;
+            }
+
+            @Override
+            public void slideRemoved(Presentation p, int index, Slide slide) {
+            }
+
+            @Override
+            public void slidesReplaced(Presentation p) {
+            }
+        });
+
+        presentation.batch(() -> {
+            presentation.addSlide(new Slide());
+            presentation.addSlide(new Slide());
+        });
+
+        assertEquals(2, inserted[0]);
+    }
+
+    @Test
+    public void testBatchEndsWhenChangesFail() {
+        assertThrows(IllegalArgumentException.class, () -> presentation.batch(() -> {
+            presentation.addSlide(new Slide());
+            presentation.setSlideNumber(5);
+        }));
+
+        assertFalse(presentation.isUpdating());
+        assertEquals(1, updates);
+    }
+
+    @Test
+    public void testEndUpdateWithoutBegin() {
+        assertThrows(IllegalStateException.class, () -> presentation.endUpdate());
+    }
+
+    @Test
+    public void testTypedEventsCarryIndices() {
+        presentation.addSlide(new Slide());
+        presentation.addSlide(new Slide());
+        List<PresentationEvent> events = new ArrayList<>();
+        presentation.addPresentationListener(events::add);
+
+        Slide inserted = new Slide();
+        presentation.insertSlide(1, inserted);
+        TextItem item = new TextItem(1, "Item");
+        presentation.appendItem(2, item);
+        presentation.setSlideNumber(2);
+        presentation.setTitle("Typed");
+        presentation.removeSlide(0);
+
+        assertEquals(6, events.size());
+        PresentationEvent.SlideAdded added = (PresentationEvent.SlideAdded) events.get(0);
+        assertEquals(1, added.getIndex());
+        assertSame(inserted, added.getSlide());
+        PresentationEvent.ItemAdded itemAdded = (PresentationEvent.ItemAdded) events.get(1);
+        assertEquals(2, itemAdded.getSlideIndex());
+        assertEquals(0, itemAdded.getItemIndex());
+        assertSame(item, itemAdded.getItem());
+        PresentationEvent.NavigationChanged navigation = (PresentationEvent.NavigationChanged) events.get(2);
+        assertEquals(0, navigation.getOldSlideNumber());
+        assertEquals(2, navigation.getNewSlideNumber());
+        assertEquals("Typed", ((PresentationEvent.TitleChanged) events.get(3)).getTitle());
+        assertEquals(0, ((PresentationEvent.SlideRemoved) events.get(4)).getIndex());
+        assertEquals(1, ((PresentationEvent.NavigationChanged) events.get(5)).getNewSlideNumber());
+    }
+
+    @Test
+    public void testNavigationEventOnlyWhenSlideNumberChanges() {
+        presentation.addSlide(new Slide());
+        List<PresentationEvent> events = new ArrayList<>();
+        presentation.addPresentationListener(events::add);
+
+        presentation.setSlideNumber(0);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testAffectsSlide() {
+        assertTrue(new PresentationEvent.SlideAdded(presentation, 1, new Slide()).affectsSlide(3));
+        assertFalse(new PresentationEvent.SlideAdded(presentation, 4, new Slide()).affectsSlide(3));
+        assertFalse(new PresentationEvent.SlideChanged(presentation, 2).affectsSlide(3));
+        assertTrue(new PresentationEvent.SlideChanged(presentation, 3).affectsSlide(3));
+        assertFalse(new PresentationEvent.TitleChanged(presentation, "Title").affectsSlide(3));
+    }
+
+    @Test
+    public void testEditListenerSeesReplaceAsRemoveAndInsert() {
+        presentation.addSlide(new Slide());
+        List<String> calls = new ArrayList<>();
+        presentation.addEditListener(new PresentationEditListener() {
+            @Override
+            public void titleChanged(Presentation p, String title) {
+                calls.add("title");
+            }
+
+            @Override
+            public void slideInserted(Presentation p, int index, Slide slide) {
+                calls.add("insert " + index);
+            }
+
+            @Override
+            public void slideRemoved(Presentation p, int index, Slide slide) {
+                calls.add("remove " + index);
+            }
+
+            @Override
+            public void slidesReplaced(Presentation p) {
+                calls.add("replace all");
+            }
+        });
+
+        presentation.replaceSlide(0, new Slide());
+        presentation.setSlideNumber(0);
+        presentation.clear();
+
+        assertEquals(List.of("remove 0", "insert 0", "replace all"), calls);
+    }
+
+    /**
+     * An observer that is notified on its own thread and can be held up
+     */
+    private static class SlowObserver implements Observer {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Slide> seen = new ArrayList<>();
+        volatile Thread thread;
+
+        @Override
+        public ObserverDispatch getDispatch() {
+            return ObserverDispatch.BACKGROUND;
+        }
+
+        @Override
+        public void update(Presentation presentation, Slide slide) {
+            thread = Thread.currentThread();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (seen) {
+                seen.add(slide);
+                seen.notifyAll();
+            }
+        }
+
+        void awaitSlide(Slide slide) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            synchronized (seen) {
+                while (!seen.contains(slide) && System.currentTimeMillis() < deadline) {
+                    seen.wait(100);
+                }
+            }
+            assertTrue(seen.contains(slide), "The observer should see the latest slide");
+        }
+    }
+
+    @Test
+    public void testSlowBackgroundObserverDoesNotBlockNavigation() throws Exception {
+        for (int slideNumber = 0; slideNumber < 100; slideNumber++) {
+            presentation.addSlide(new Slide());
+        }
+        presentation.setAsyncDispatch(Runnable::run);
+        SlowObserver slow = new SlowObserver();
+        presentation.addObserver(slow);
+        updates = 0;
+
+        for (int slideNumber = 0; slideNumber < 100; slideNumber++) {
+            presentation.setSlideNumber(slideNumber);
+        }
+        assertEquals(100, updates, "Synchronous observers are still notified directly");
+        slow.release.countDown();
+
+        slow.awaitSlide(presentation.getSlide(99));
+        assertNotSame(Thread.currentThread(), slow.thread);
+        assertTrue(slow.seen.size() <= 3, "Waiting notifications should be merged");
+        assertTrue(presentation.getCoalescedCount(slow) >= 97);
+        presentation.removeObserver(slow);
+    }
+
+    @Test
+    public void testEventThreadObserverRunsOnGivenExecutor() {
+        presentation.addSlide(new Slide());
+        List<Runnable> eventQueue = new ArrayList<>();
+        presentation.setAsyncDispatch(eventQueue::add);
+        List<Slide> seen = new ArrayList<>();
+        presentation.addObserver(new Observer() {
+            @Override
+            public ObserverDispatch getDispatch() {
+                return ObserverDispatch.EVENT_THREAD;
+            }
+
+            @Override
+            public void update(Presentation p, Slide slide) {
+                seen.add(slide);
+            }
+        });
+
+        presentation.setTitle("One");
+        presentation.setTitle("Two");
+
+        assertTrue(seen.isEmpty());
+        assertEquals(1, eventQueue.size(), "One delivery should be queued for both changes");
+        eventQueue.get(0).run();
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    public void testObserversAreDirectWithoutAsyncDispatch() {
+        presentation.addSlide(new Slide());
+        SlowObserver observer = new SlowObserver();
+        observer.release.countDown();
+        presentation.addObserver(observer);
+
+        presentation.setSlideNumber(0);
+
+        assertFalse(presentation.isAsyncDispatch());
+        assertSame(Thread.currentThread(), observer.thread);
+    }
+
+    @Test
+    public void testConcurrentWritersAreSerialized() throws Exception {
+        List<Integer> addedAt = new ArrayList<>();
+        presentation.addPresentationListener(event -> {
+            if (event instanceof PresentationEvent.SlideAdded) {
+                addedAt.add(((PresentationEvent.SlideAdded) event).getIndex());
+            }
+        });
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int writer = 0; writer < 4; writer++) {
+                results.add(writers.submit(() -> {
+                    for (int slideNumber = 0; slideNumber < 500; slideNumber++) {
+                        presentation.addSlide(new Slide());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        assertEquals(2000, presentation.getSize());
+        assertEquals(2000, updates);
+        for (int index = 0; index < addedAt.size(); index++) {
+            assertEquals(index, addedAt.get(index), "Events should follow the order of the changes");
+        }
+    }
+
+    @Test
+    public void testReadersDuringChanges() throws Exception {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 3; reader++) {
+                readers.add(threads.submit(() -> {
+                    while (writing.get()) {
+                        int size = presentation.getSize();
+                        assertTrue(size >= 0 && size <= 10);
+                        presentation.getCurrentSlide();
+                        presentation.getSlide(size - 1);
+                        presentation.getTitle();
+                        reads.incrementAndGet();
+                    }
+                }));
+            }
+            Future<?> writer = threads.submit(() -> {
+                for (int round = 0; round < 2000; round++) {
+                    presentation.batch(() -> {
+                        presentation.clear();
+                        for (int slideNumber = 0; slideNumber < 10; slideNumber++) {
+                            presentation.addSlide(new Slide());
+                        }
+                        presentation.setSlideNumber(9);
+                        presentation.removeSlide(9);
+                    });
+                }
+                writing.set(false);
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writing.set(false);
+            threads.shutdownNow();
+        }
+
+        assertTrue(reads.get() > 0);
+        assertEquals(9, presentation.getSize());
+        assertEquals(8, presentation.getSlideNumber());
+        assertEquals(presentation.getSlide(8), presentation.getCurrentSlide());
+    }
+
+    @Test
+    public void testObserversCanBeAddedWhileNotifying() throws Exception {
+        presentation.addSlide(new Slide());
+        AtomicInteger added = new AtomicInteger();
+        presentation.addObserver((p, slide) -> p.addObserver((q, s) -> added.incrementAndGet()));
+        Thread churn = new Thread(() -> {
+            for (int count = 0; count < 1000; count++) {
+                Observer observer = (p, slide) -> { };
+                presentation.addObserver(observer);
+                presentation.removeObserver(observer);
+            }
+        });
+        churn.start();
+
+        for (int count = 0; count < 1000; count++) {
+            presentation.setTitle("Title " + count);
+        }
+        churn.join(30000);
+
+        assertFalse(churn.isAlive());
+        assertTrue(added.get() > 0);
+    }
+
+    @Test
+    public void testBatchHoldsOffOtherWriters() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            started.countDown();
+            presentation.addSlide(new Slide());
+        });
+
+        presentation.batch(() -> {
+            presentation.addSlide(new Slide());
+            other.start();
+            try {
+                started.await(10, TimeUnit.SECONDS);
+                other.join(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            assertTrue(other.isAlive(), "Another writer should wait for the batch");
+            assertEquals(1, presentation.getSize());
+        });
+        other.join(10000);
+
+        assertEquals(2, presentation.getSize());
+    }
+
+    @Test
+    public void testEndUpdateOnAnotherThread() throws Exception {
+        presentation.beginUpdate();
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread other = new Thread(() -> {
+            try {
+                presentation.endUpdate();
+            } catch (IllegalStateException ex) {
+                failed.set(true);
+            }
+        });
+        other.start();
+        other.join(10000);
+        presentation.endUpdate();
+
+        assertTrue(failed.get());
+        assertFalse(presentation.isUpdating());
+    }
+
+    @Test
+    public void testVersionsShareUnchangedSlides() {
+        for (int slideNumber = 0; slideNumber < 3; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + slideNumber);
+            presentation.addSlide(slide);
+        }
+        PresentationVersion first = presentation.getVersion();
+        assertSame(first, presentation.getVersion(), "A version is only made after a change");
+
+        presentation.appendItem(1, new TextItem(1, "Added"));
+        PresentationVersion second = presentation.getVersion();
+
+        assertNotSame(first, second);
+        assertSame(first.getSlide(0), second.getSlide(0));
+        assertSame(first.getSlide(2), second.getSlide(2));
+        assertEquals(0, first.getSlide(1).getSize(), "Old versions do not change");
+        assertEquals(1, second.getSlide(1).getSize());
+    }
+
+    @Test
+    public void testVersionFollowsEveryChange() {
+        presentation.addSlide(new Slide());
+        presentation.getVersion();
+
+        presentation.setTitle("Versions");
+        presentation.insertSlide(0, new Slide());
+        presentation.setSlideNumber(1);
+        Slide edited = presentation.getSlide(0);
+        edited.setTitle("Edited");
+        presentation.slideChanged(0);
+        presentation.removeSlide(1);
+
+        PresentationVersion version = presentation.getVersion();
+        assertEquals("Versions", version.getTitle());
+        assertEquals(1, version.getSize());
+        assertEquals(0, version.getSlideNumber());
+        assertEquals("Edited", version.getSlide(0).getTitle());
+
+        presentation.clear();
+        assertEquals(0, presentation.getVersion().getSize());
+    }
+
+    @Test
+    public void testVersionSeesSlidesEditedInPlace() {
+        Slide slide = new Slide();
+        slide.setTitle("one");
+        presentation.addSlide(slide);
+        presentation.addSlide(new Slide());
+        PresentationVersion first = presentation.getVersion();
+
+        slide.setTitle("EDITED");
+        PresentationVersion second = presentation.getVersion();
+
+        assertEquals("one", first.getSlide(0).getTitle());
+        assertEquals("EDITED", second.getSlide(0).getTitle());
+        assertSame(first.getSlide(1), second.getSlide(1));
+    }
+
+    @Test
+    public void testVersionDoesNotLoadSlides() {
+        AtomicInteger loads = new AtomicInteger();
+        presentation.setSlideSource(new SlideSource() {
+            @Override
+            public int getSize() {
+                return 100;
+            }
+
+            @Override
+            public Slide loadSlide(int index) {
+                loads.incrementAndGet();
+                Slide slide = new Slide();
+                slide.setTitle("Slide " + index);
+                return slide;
+            }
+        }, 4);
+        presentation.getSlide(1).setTitle("Edited");
+        int loaded = loads.get();
+
+        PresentationVersion version = presentation.getVersion();
+
+        assertEquals(loaded, loads.get(), "Taking a version should not load slides");
+        assertTrue(version.getSlide(1).isLoaded());
+        assertFalse(version.getSlide(2).isLoaded());
+        assertEquals("Slide 2", version.getSlide(2).getTitle());
+        assertEquals(0, version.getSlide(2).getSize());
+        assertEquals(loaded + 1, loads.get(), "An unloaded slide should be loaded once");
+        Presentation copy = version.toPresentation();
+        assertEquals(100, copy.getSize());
+        assertEquals("Edited", copy.getSlide(1).getTitle());
+        assertEquals("Slide 99", copy.getSlide(99).getTitle());
+    }
+
+    @Test
+    public void testVersionDoesNotShareEditableItems() {
+        Slide slide = new Slide();
+        TextItem text = new TextItem(1, "Before");
+        slide.append(text);
+        presentation.addSlide(slide);
+
+        PresentationVersion version = presentation.getVersion();
+        text.setText("After");
+        Presentation copy = version.toPresentation();
+
+        assertEquals("Before", ((TextItem) version.getSlide(0).getSlideItem(0)).getText());
+        assertEquals("Before", ((TextItem) copy.getSlide(0).getSlideItem(0)).getText());
+        assertThrows(UnsupportedOperationException.class,
+                () -> version.getSlide(0).getSlideItems().add(new TextItem()));
+    }
+}
@@ -0,0 +1,195 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.imageio.ImageIO;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.ImageCache;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the ArchiveAccessor class
+ */
+public class ArchiveAccessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testImagesAreReadFromArchive() throws IOException {
+        File image = writeImage("photo.png", 30, 20);
+        Presentation presentation = new Presentation();
+        presentation.setTitle("Archive");
+        Slide slide = new Slide();
+        slide.setTitle("Pictures");
+        slide.append(new TextItem(1, "Caption"));
+        CompositeSlideItem group = new CompositeSlideItem(1, "Group");
+        group.add(new BitmapItem(2, image.getPath()));
+        slide.append(group);
+        presentation.addSlide(slide);
+        String archive = tempDir.resolve("deck" + ArchiveAccessor.EXTENSION).toString();
+        new ArchiveAccessor().savePresentation(presentation, archive);
+        assertTrue(image.delete(), "The loaded presentation should not need the original image");
+
+        Presentation loaded = new Presentation();
+        new ArchiveAccessor().loadPresentation(loaded, archive);
+
+        assertEquals("Archive", loaded.getTitle());
+        Slide loadedSlide = loaded.getSlide(0);
+        assertEquals("Caption", ((TextItem) loadedSlide.getSlideItem(0)).getText());
+        BitmapItem bitmap = (BitmapItem) ((CompositeSlideItem) loadedSlide.getSlideItem(1)).getChild(0);
+        assertTrue(bitmap.getImageHandle().getPath().matches(".*!/img/photo-[0-9a-f]+\\.png"),
+                bitmap.getImageHandle().getPath());
+        assertNull(bitmap.getImageHandle().peek(), "Images should only be decoded when needed");
+        assertEquals(new Dimension(30, 20), bitmap.getImageSize());
+        assertEquals(30, bitmap.getImageHandle().getImage().getWidth());
+    }
+
+    @Test
+    public void testXmlModelInArchive() throws IOException {
+        File image = writeImage("logo.png", 10, 10);
+        File archive = tempDir.resolve("xml.jpz").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry(ArchiveAccessor.XML_ENTRY));
+            out.write(("<?xml version=\"1.0\"?>\n<presentation><showtitle>Zipped</showtitle>"
+                    + "<slide><title>One</title><item kind=\"image\" level=\"1\">logo.png</item></slide>"
+                    + "</presentation>").getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("img/logo.png"));
+            out.write(Files.readAllBytes(image.toPath()));
+        }
+
+        Presentation loaded = new Presentation();
+        PresentationLoaderContext.loaderFor(archive.getPath()).loadPresentation(loaded, archive.getPath());
+
+        assertEquals("Zipped", loaded.getTitle());
+        BitmapItem bitmap = (BitmapItem) loaded.getSlide(0).getSlideItem(0);
+        assertEquals("img/logo.png", bitmap.getName());
+        assertEquals(new Dimension(10, 10), bitmap.getImageSize());
+    }
+
+    @Test
+    public void testEntryNamesStayInsideArchive() {
+        assertEquals("img/logo.gif", ArchiveAccessor.entryName("img/logo.gif"));
+        assertEquals("img/logo.gif", ArchiveAccessor.entryName("./img/logo.gif"));
+        String[] outside = {"/home/user/logo.gif", "..\\pictures\\logo.gif", "C:\\pictures\\logo.gif"};
+        Set<String> names = new HashSet<>();
+        for (String imageName : outside) {
+            String name = ArchiveAccessor.entryName(imageName);
+            assertTrue(name.matches("img/logo-[0-9a-f]+\\.gif"), name);
+            names.add(name);
+        }
+        assertEquals(outside.length, names.size(), "Entry names should be unique");
+    }
+
+    @Test
+    public void testImagesWithTheSameFileNameStayApart() throws IOException {
+        Files.createDirectories(tempDir.resolve("a"));
+        Files.createDirectories(tempDir.resolve("b"));
+        File first = writeImage("a/x.png", 10, 10);
+        File second = writeImage("b/x.png", 20, 20);
+        Presentation presentation = new Presentation();
+        Slide slide = new Slide();
+        slide.append(new BitmapItem(1, first.getPath()));
+        slide.append(new BitmapItem(1, second.getPath()));
+        presentation.addSlide(slide);
+        String archive = tempDir.resolve("same" + ArchiveAccessor.EXTENSION).toString();
+        new ArchiveAccessor().savePresentation(presentation, archive);
+
+        Presentation loaded = new Presentation();
+        new ArchiveAccessor().loadPresentation(loaded, archive);
+
+        assertEquals(new Dimension(10, 10), ((BitmapItem) loaded.getSlide(0).getSlideItem(0)).getImageSize());
+        assertEquals(new Dimension(20, 20), ((BitmapItem) loaded.getSlide(0).getSlideItem(1)).getImageSize());
+    }
+
+    @Test
+    public void testOldImageEntriesAreFound() throws IOException {
+        File image = writeImage("old.png", 12, 8);
+        File archive = tempDir.resolve("old.jpz").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry(ArchiveAccessor.XML_ENTRY));
+            out.write(("<?xml version=\"1.0\"?>\n<presentation><showtitle>Old</showtitle>"
+                    + "<slide><title>One</title><item kind=\"image\" level=\"1\">/pictures/old.png</item></slide>"
+                    + "</presentation>").getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("img/old.png"));
+            out.write(Files.readAllBytes(image.toPath()));
+        }
+
+        Presentation loaded = new Presentation();
+        new ArchiveAccessor().loadPresentation(loaded, archive.getPath());
+
+        assertEquals(new Dimension(12, 8), ((BitmapItem) loaded.getSlide(0).getSlideItem(0)).getImageSize());
+    }
+
+    @Test
+    public void testLoadedArchiveIsOpenedOnce() throws IOException {
+        Presentation presentation = new Presentation();
+        Slide slide = new Slide();
+        slide.append(new BitmapItem(1, writeImage("one.png", 10, 10).getPath()));
+        slide.append(new BitmapItem(1, writeImage("two.png", 20, 10).getPath()));
+        presentation.addSlide(slide);
+        File archive = tempDir.resolve("shared" + ArchiveAccessor.EXTENSION).toFile();
+        new ArchiveAccessor().savePresentation(presentation, archive.getPath());
+
+        Presentation loaded = new Presentation();
+        new ArchiveAccessor().loadPresentation(loaded, archive.getPath());
+        ImageCache.Archive opened = ImageCache.getInstance().openArchive(archive);
+
+        assertSame(opened, ImageCache.getInstance().openArchive(archive),
+                "An unchanged archive should be shared");
+        assertEquals(3, opened.getEntryNames().size());
+        assertTrue(((BitmapItem) loaded.getSlide(0).getSlideItem(1)).getImageHandle().exists());
+        String copy = tempDir.resolve("copy" + ArchiveAccessor.EXTENSION).toString();
+        new ArchiveAccessor().savePresentation(loaded, copy);
+        new PresentationSaveService().save(loaded, archive.getPath()).join();
+        assertTrue(archive.setLastModified(archive.lastModified() + 2000));
+        assertNotSame(opened, ImageCache.getInstance().openArchive(archive),
+                "A changed archive should be opened again");
+    }
+
+    @Test
+    public void testMissingImageFailsTheSave() {
+        Presentation presentation = new Presentation();
+        Slide slide = new Slide();
+        slide.append(new BitmapItem(1, tempDir.resolve("missing.png").toString()));
+        presentation.addSlide(slide);
+        String archive = tempDir.resolve("missing" + ArchiveAccessor.EXTENSION).toString();
+
+        assertThrows(IOException.class, () -> new ArchiveAccessor().savePresentation(presentation, archive));
+    }
+
+    @Test
+    public void testArchiveWithoutPresentationIsRejected() throws IOException {
+        File archive = tempDir.resolve("empty.jpz").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry("readme.txt"));
+        }
+
+        assertThrows(IOException.class, () ->
+                new ArchiveAccessor().loadPresentation(new Presentation(), archive.getPath()));
+    }
+
+    private File writeImage(String name, int width, int height) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+        return file;
+    }
+}
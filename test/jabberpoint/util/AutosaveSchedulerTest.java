@@ -0,0 +1,105 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+
+/**
+ * Unit test for the AutosaveScheduler class
+ */
+public class AutosaveSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Presentation presentation;
+    private String file;
+
+    @BeforeEach
+    public void setUp() {
+        presentation = new Presentation();
+        for (int slideNumber = 1; slideNumber <= 3; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + slideNumber);
+            presentation.addSlide(slide);
+        }
+        presentation.setSlideNumber(0);
+        file = tempDir.resolve("autosave.xml").toString();
+    }
+
+    @Test
+    public void testBurstOfEditsIsSavedOnce() throws Exception {
+        AutosaveScheduler autosave = new AutosaveScheduler(presentation, file,
+                new PresentationSaveService(), 200, 10000, Runnable::run);
+        for (int item = 0; item < 20; item++) {
+            presentation.getCurrentSlide().append(1, "Item " + item);
+            presentation.notifyObservers();
+        }
+
+        waitForSave(autosave, 1);
+        Thread.sleep(400);
+        assertEquals(1, autosave.getSaveCount(), "Edits in one burst should be saved together");
+        assertFalse(autosave.isDirty());
+        autosave.close();
+    }
+
+    @Test
+    public void testNavigationDoesNotSave() {
+        AutosaveScheduler autosave = new AutosaveScheduler(presentation, file,
+                new PresentationSaveService(), 200, 10000, Runnable::run);
+        presentation.nextSlide();
+        presentation.previousSlide();
+
+        assertFalse(autosave.isDirty());
+        assertNull(autosave.saveIfChanged(), "Nothing should be saved without edits");
+        autosave.close();
+    }
+
+    @Test
+    public void testContinuousEditsAreSavedAfterMaximumDelay() throws Exception {
+        AutosaveScheduler autosave = new AutosaveScheduler(presentation, file,
+                new PresentationSaveService(), 300, 500, Runnable::run);
+        long end = System.currentTimeMillis() + 1200;
+        int edit = 0;
+        while (System.currentTimeMillis() < end) {
+            presentation.setTitle("Edit " + edit++);
+            Thread.sleep(50);
+        }
+
+        assertTrue(autosave.getSaveCount() >= 1, "Edits should not stay unsaved beyond the maximum delay");
+        autosave.close();
+    }
+
+    @Test
+    public void testSavedFileHasLatestEdits() throws IOException {
+        AutosaveScheduler autosave = new AutosaveScheduler(presentation, file,
+                new PresentationSaveService(), 10000, 10000, Runnable::run);
+        presentation.setTitle("Saved title");
+
+        CompletableFuture<Path> saved = autosave.saveIfChanged();
+        assertNotNull(saved);
+        saved.join();
+        autosave.close();
+
+        Presentation loaded = new Presentation();
+        new StreamingXMLLoader().loadPresentation(loaded, file);
+        assertEquals("Saved title", loaded.getTitle());
+        assertEquals(3, loaded.getSize());
+    }
+
+    private static void waitForSave(AutosaveScheduler autosave, long saves) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (autosave.getSaveCount() < saves && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(saves, autosave.getSaveCount());
+    }
+}
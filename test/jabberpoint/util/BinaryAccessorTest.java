@@ -0,0 +1,149 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.CompositeSlideItem;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the BinaryAccessor class
+ */
+public class BinaryAccessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTripOfXmlPresentation() throws IOException {
+        Presentation expected = new Presentation();
+        new StreamingXMLLoader().loadPresentation(expected, "test.xml");
+        String path = tempDir.resolve("test" + BinaryAccessor.EXTENSION).toString();
+        new BinaryAccessor().savePresentation(expected, path);
+
+        Presentation actual = new Presentation();
+        new BinaryAccessor().loadPresentation(actual, path);
+
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int slideNumber = 0; slideNumber < expected.getSize(); slideNumber++) {
+            Slide expectedSlide = expected.getSlide(slideNumber);
+            Slide actualSlide = actual.getSlide(slideNumber);
+            assertEquals(expectedSlide.getTitle(), actualSlide.getTitle());
+            assertEquals(expectedSlide.getSize(), actualSlide.getSize());
+            for (int itemNumber = 0; itemNumber < expectedSlide.getSize(); itemNumber++) {
+                assertSameItem(expectedSlide.getSlideItem(itemNumber), actualSlide.getSlideItem(itemNumber));
+            }
+        }
+    }
+
+    @Test
+    public void testGroupsAndUnicodeAreKept() throws IOException {
+        Presentation presentation = new Presentation();
+        presentation.setTitle("Café ☃");
+        Slide slide = new Slide();
+        slide.setTitle("Groups");
+        CompositeSlideItem group = new CompositeSlideItem(1, "Group");
+        group.add(new TextItem(2, "<child> & \"quotes\""));
+        group.add(new BitmapItem(3, "logo.gif"));
+        slide.append(group);
+        presentation.addSlide(slide);
+        String path = tempDir.resolve("groups.jpb").toString();
+        new BinaryAccessor().savePresentation(presentation, path);
+
+        Presentation loaded = new Presentation();
+        new BinaryAccessor().loadPresentation(loaded, path);
+
+        assertEquals("Café ☃", loaded.getTitle());
+        assertSameItem(group, loaded.getSlide(0).getSlideItem(0));
+    }
+
+    @Test
+    public void testSlidesAreDecodedOnDemand() throws IOException {
+        Presentation presentation = new Presentation();
+        for (int slideNumber = 1; slideNumber <= 100; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + slideNumber);
+            slide.append(1, "Same text on every slide");
+            presentation.addSlide(slide);
+        }
+        String path = tempDir.resolve("deck.jpb").toString();
+        new BinaryAccessor().savePresentation(presentation, path);
+
+        Presentation loaded = new Presentation();
+        new BinaryAccessor(4).loadPresentation(loaded, path);
+
+        assertEquals(100, loaded.getSize());
+        Slide slide = loaded.getSlide(41);
+        assertEquals("Slide 42", slide.getTitle());
+        assertSame(slide, loaded.getSlide(41), "A decoded slide should be cached");
+    }
+
+    @Test
+    public void testIsBinaryFile() {
+        assertTrue(BinaryAccessor.isBinaryFile("deck.JPB"));
+        assertFalse(BinaryAccessor.isBinaryFile("deck.xml"));
+        assertTrue(PresentationLoaderContext.loaderFor("deck.jpb") instanceof BinaryAccessor);
+        assertTrue(PresentationLoaderContext.loaderFor("deck.xml") instanceof StreamingXMLLoader);
+    }
+
+    @Test
+    public void testXmlFileIsRejected() {
+        assertThrows(IOException.class, () ->
+                new BinaryAccessor().loadPresentation(new Presentation(), "test.xml"));
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+        File file = tempDir.resolve("short.jpb").toFile();
+        Files.write(file.toPath(), new byte[] {'J', 'P', 'B', 0});
+
+        assertThrows(IOException.class, () ->
+                new BinaryAccessor().loadPresentation(new Presentation(), file.getPath()));
+    }
+
+    private static void assertSameItem(SlideItem expected, SlideItem actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getLevel(), actual.getLevel());
+        if (expected instanceof TextItem) {
+            assertEquals(((TextItem) expected).getText(), ((TextItem) actual).getText());
+        } else if (expected instanceof BitmapItem) {
+            assertEquals(((BitmapItem) expected).getName(), ((BitmapItem) actual).getName());
+        } else {
+            CompositeSlideItem expectedGroup = (CompositeSlideItem) expected;
+            CompositeSlideItem actualGroup = (CompositeSlideItem) actual;
+            assertEquals(expectedGroup.getName(), actualGroup.getName());
+            assertEquals(expectedGroup.getSize(), actualGroup.getSize());
+            for (int index = 0; index < expectedGroup.getSize(); index++) {
+                assertSameItem(expectedGroup.getChild(index), actualGroup.getChild(index));
+            }
+        }
+    }
+
+    @Test
+    public void testNegativeStringLengthIsRejected() throws IOException {
+        Presentation presentation = new Presentation();
+        presentation.setTitle("Title");
+        Path file = tempDir.resolve("negative.jpb");
+        new BinaryAccessor().savePresentation(presentation, file.toString());
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int titleString = bytes.getInt(2 * Integer.BYTES);
+        int stringTableOffset = bytes.getInt(6 * Integer.BYTES);
+        bytes.putInt(stringTableOffset + titleString * 2 * Integer.BYTES + Integer.BYTES, -1);
+        Files.write(file, bytes.array());
+
+        assertThrows(IOException.class, () ->
+                new BinaryAccessor().loadPresentation(new Presentation(), file.toString()));
+    }
+}
@@ -0,0 +1,201 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletionException;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.FailedSlide;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the IndexedXMLLoader class
+ */
+public class IndexedXMLLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSameResultAsStreamingLoader() throws IOException {
+        Presentation expected = new Presentation();
+        new StreamingXMLLoader().loadPresentation(expected, "test.xml");
+        Presentation actual = new Presentation();
+        new IndexedXMLLoader().loadPresentation(actual, "test.xml");
+
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int slideNumber = 0; slideNumber < expected.getSize(); slideNumber++) {
+            Slide expectedSlide = expected.getSlide(slideNumber);
+            Slide actualSlide = actual.getSlide(slideNumber);
+            assertEquals(expectedSlide.getTitle(), actualSlide.getTitle());
+            assertEquals(expectedSlide.getSize(), actualSlide.getSize());
+            for (int itemNumber = 0; itemNumber < expectedSlide.getSize(); itemNumber++) {
+                SlideItem expectedItem = expectedSlide.getSlideItem(itemNumber);
+                SlideItem actualItem = actualSlide.getSlideItem(itemNumber);
+                assertEquals(expectedItem.getClass(), actualItem.getClass());
+                assertEquals(expectedItem.getLevel(), actualItem.getLevel());
+                if (expectedItem instanceof TextItem) {
+                    assertEquals(((TextItem) expectedItem).getText(), ((TextItem) actualItem).getText());
+                } else {
+                    assertEquals(((BitmapItem) expectedItem).getName(), ((BitmapItem) actualItem).getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCommentsAreNotIndexed() throws IOException {
+        File xmlFile = tempDir.resolve("comments.xml").toFile();
+        Files.writeString(xmlFile.toPath(), "<?xml version=\"1.0\"?>\n" +
+                "<presentation>\n" +
+                "    <showtitle>Title</showtitle>\n" +
+                "    <!-- <slide><title>Hidden</title></slide> -->\n" +
+                "    <slide>\n" +
+                "        <title>First</title>\n" +
+                "        <item kind=\"text\" level=\"1\"><![CDATA[<slide> in text]]></item>\n" +
+                "    </slide>\n" +
+                "    <slide/>\n" +
+                "</presentation>");
+
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader().loadPresentation(presentation, xmlFile.getPath());
+
+        assertEquals("Title", presentation.getTitle());
+        assertEquals(2, presentation.getSize());
+        assertEquals("First", presentation.getSlide(0).getTitle());
+        assertEquals("<slide> in text", ((TextItem) presentation.getSlide(0).getSlideItem(0)).getText());
+        assertEquals(0, presentation.getSlide(1).getSize());
+    }
+
+    @Test
+    public void testSlidesAreCachedAndEvicted() throws IOException {
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader(2).loadPresentation(presentation, writeDeck(1000));
+
+        assertEquals(1000, presentation.getSize());
+        Slide first = presentation.getSlide(0);
+        assertEquals("Slide 1", first.getTitle());
+        assertSame(first, presentation.getSlide(0), "A cached slide should not be parsed again");
+
+        presentation.getSlide(500);
+        presentation.getSlide(999);
+        assertEquals("Slide 1000", presentation.getSlide(999).getTitle());
+        assertNotSame(first, presentation.getSlide(0), "An evicted slide should be parsed again");
+    }
+
+    @Test
+    public void testModifiedSlideIsNotEvicted() throws IOException {
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader(1).loadPresentation(presentation, writeDeck(10));
+
+        Slide first = presentation.getSlide(0);
+        first.append(1, "Added");
+        presentation.getSlide(1);
+        presentation.getSlide(2);
+
+        assertSame(first, presentation.getSlide(0));
+        assertEquals(2, presentation.getSlide(0).getSize());
+    }
+
+    @Test
+    public void testSlideOfChangedFileIsNotSaved() throws IOException {
+        String file = writeDeck(10);
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader(2).loadPresentation(presentation, file);
+        Files.writeString(Path.of(file), "<!-- changed -->", StandardOpenOption.APPEND);
+
+        Slide failed = presentation.getSlide(5);
+
+        assertTrue(failed instanceof FailedSlide);
+        assertEquals("Error loading slide 6", failed.getTitle());
+        String copy = tempDir.resolve("copy.xml").toString();
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> new PresentationSaveService().save(presentation, copy).join());
+        assertTrue(thrown.getCause() instanceof UncheckedIOException);
+        assertFalse(Files.exists(Path.of(copy)), "Nothing should be written over the file");
+    }
+
+    @Test
+    public void testSaveOverFileKeepsUnloadedSlides() throws IOException {
+        String file = writeDeck(10);
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader(2).loadPresentation(presentation, file);
+        presentation.getSlide(0).setTitle("Edited");
+        presentation.removeSlide(3);
+
+        new PresentationSaveService().save(presentation, file).join();
+        Slide slide = presentation.getSlide(5);
+
+        assertFalse(slide instanceof FailedSlide);
+        assertEquals("Slide 7", slide.getTitle());
+        new PresentationSaveService().save(presentation, file).join();
+        assertEquals("Slide 10", presentation.getSlide(8).getTitle());
+        Presentation reloaded = new Presentation();
+        new IndexedXMLLoader().loadPresentation(reloaded, file);
+        assertEquals(9, reloaded.getSize());
+        assertEquals("Edited", reloaded.getSlide(0).getTitle());
+        assertEquals("Slide 7", reloaded.getSlide(5).getTitle());
+    }
+
+    @Test
+    public void testCompactionKeepsUnloadedSlides() throws IOException {
+        String file = writeDeck(10);
+        Presentation presentation = new Presentation();
+        new IndexedXMLLoader(2).loadPresentation(presentation, file);
+        PresentationJournal journal = PresentationJournal.open(presentation, file);
+        presentation.getSlide(1).setTitle("Edited");
+
+        journal.compact().join();
+        Slide slide = presentation.getSlide(8);
+
+        assertFalse(slide instanceof FailedSlide);
+        assertEquals("Slide 9", slide.getTitle());
+        presentation.getSlide(2).setTitle("Edited again");
+        journal.compact().join();
+        assertEquals("Slide 10", presentation.getSlide(9).getTitle());
+        journal.close();
+    }
+
+    @Test
+    public void testLargeFilesAreLoadedLazily() throws IOException {
+        String small = writeDeck(1);
+        File large = tempDir.resolve("large.xml").toFile();
+        try (RandomAccessFile out = new RandomAccessFile(large, "rw")) {
+            out.setLength(IndexedXMLLoader.LARGE_FILE_SIZE);
+        }
+
+        assertTrue(PresentationLoaderContext.loaderFor(small) instanceof StreamingXMLLoader);
+        assertTrue(PresentationLoaderContext.loaderFor(large.getPath()) instanceof IndexedXMLLoader);
+    }
+
+    @Test
+    public void testMissingFileThrows() {
+        assertThrows(IOException.class, () ->
+                new IndexedXMLLoader().loadPresentation(new Presentation(), "missing.xml"));
+    }
+
+    private String writeDeck(int slides) throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<presentation>\n<showtitle>Deck</showtitle>\n");
+        for (int slide = 1; slide <= slides; slide++) {
+            xml.append("<slide><title>Slide ").append(slide).append("</title>")
+                    .append("<item kind=\"text\" level=\"1\">Line</item></slide>\n");
+        }
+        xml.append("</presentation>\n");
+        File xmlFile = tempDir.resolve("deck.xml").toFile();
+        Files.writeString(xmlFile.toPath(), xml);
+        return xmlFile.getPath();
+    }
+}
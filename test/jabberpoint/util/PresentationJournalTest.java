@@ -0,0 +1,226 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import javax.imageio.ImageIO;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the PresentationJournal class
+ */
+public class PresentationJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testEditsAreReplayedOnLoad() throws IOException {
+        String base = createBase("deck.xml", 3);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        presentation.setSlideNumber(0);
+        byte[] baseContent = Files.readAllBytes(Path.of(base));
+
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        presentation.setTitle("Edited");
+        presentation.getCurrentSlide().append(new TextItem(2, "Added item"));
+        presentation.notifyObservers();
+        Slide slide = new Slide();
+        slide.setTitle("Inserted");
+        presentation.insertSlide(1, slide);
+        presentation.removeSlide(3);
+        journal.close();
+
+        assertArrayEquals(baseContent, Files.readAllBytes(Path.of(base)), "The base file should not be rewritten");
+        Presentation loaded = new Presentation();
+        assertEquals(4, PresentationJournal.load(loaded, base));
+        assertSamePresentation(presentation, loaded);
+    }
+
+    @Test
+    public void testCompactionWritesSnapshot() throws IOException {
+        String base = createBase("deck.jpb", 2);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        presentation.setSlideNumber(0);
+
+        PresentationJournal journal = PresentationJournal.open(presentation, base, 1);
+        for (int slideNumber = 0; slideNumber < 5; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Added " + slideNumber);
+            presentation.addSlide(slide);
+        }
+        journal.compact().join();
+        journal.close();
+
+        assertTrue(journal.getCompactions() > 0);
+        Presentation loaded = new Presentation();
+        PresentationJournal.load(loaded, base);
+        assertSamePresentation(presentation, loaded);
+
+        Presentation baseOnly = new Presentation();
+        new BinaryAccessor().loadPresentation(baseOnly, base);
+        assertTrue(baseOnly.getSize() > 2, "Compaction should move edits into the base file");
+    }
+
+    @Test
+    public void testDamagedRecordIsIgnored() throws IOException {
+        String base = createBase("deck.xml", 1);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        presentation.setTitle("Saved");
+        journal.close();
+        Path journalFile = PresentationJournal.journalPath(Path.of(base).toAbsolutePath());
+        Files.write(journalFile, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        Presentation loaded = new Presentation();
+        assertEquals(1, PresentationJournal.load(loaded, base));
+        assertEquals("Saved", loaded.getTitle());
+
+        PresentationJournal reopened = PresentationJournal.open(loaded, base);
+        loaded.setTitle("Saved again");
+        reopened.close();
+        Presentation reloaded = new Presentation();
+        assertEquals(2, PresentationJournal.load(reloaded, base), "The damaged tail should be dropped");
+        assertEquals("Saved again", reloaded.getTitle());
+    }
+
+    @Test
+    public void testEditsOfOtherSlidesAreRecorded() throws IOException {
+        String base = createBase("other.xml", 3);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        presentation.setSlideNumber(0);
+
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        presentation.getSlide(2).setTitle("Changed");
+        presentation.slideChanged(2);
+        presentation.appendItem(1, new TextItem(1, "Appended"));
+        journal.close();
+
+        Presentation loaded = new Presentation();
+        assertEquals(2, PresentationJournal.load(loaded, base));
+        assertSamePresentation(presentation, loaded);
+    }
+
+    @Test
+    public void testCompactWhileEditingOnAnotherThread() throws Exception {
+        String base = createBase("busy.xml", 2);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        Thread editor = new Thread(() -> {
+            for (int edit = 0; edit < 200; edit++) {
+                presentation.setTitle("Edit " + edit);
+            }
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            editor.start();
+            for (int compaction = 0; compaction < 20; compaction++) {
+                journal.compact().join();
+            }
+            editor.join();
+        });
+        journal.close();
+
+        Presentation loaded = new Presentation();
+        PresentationJournal.load(loaded, base);
+        assertEquals("Edit 199", loaded.getTitle());
+    }
+
+    @Test
+    public void testJournalOfOtherBaseIsIgnored() throws IOException {
+        String base = createBase("deck.xml", 1);
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        presentation.setTitle("Edited");
+        journal.close();
+        createBase("deck.xml", 2);
+
+        Presentation loaded = new Presentation();
+        assertEquals(0, PresentationJournal.load(loaded, base));
+        assertEquals("Base", loaded.getTitle());
+    }
+
+    @Test
+    public void testArchiveImagesSurviveReplayAndCompaction() throws IOException {
+        File image = tempDir.resolve("photo.png").toFile();
+        ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB), "png", image);
+        Presentation original = new Presentation();
+        Slide pictures = new Slide();
+        pictures.setTitle("Pictures");
+        pictures.append(new BitmapItem(1, image.getPath()));
+        original.addSlide(pictures);
+        String base = tempDir.resolve("deck" + ArchiveAccessor.EXTENSION).toString();
+        new ArchiveAccessor().savePresentation(original, base);
+        assertTrue(image.delete(), "The images should only be read from the archive");
+        Presentation presentation = new Presentation();
+        PresentationJournal.load(presentation, base);
+        PresentationJournal journal = PresentationJournal.open(presentation, base);
+        presentation.getSlide(0).setTitle("Edited");
+        presentation.notifyObservers();
+        journal.close();
+
+        Presentation replayed = new Presentation();
+        assertEquals(1, PresentationJournal.load(replayed, base));
+        assertTrue(((BitmapItem) replayed.getSlide(0).getSlideItem(0)).getImageHandle().exists());
+        PresentationJournal compacting = PresentationJournal.open(replayed, base);
+        compacting.compact().join();
+        compacting.close();
+
+        Presentation loaded = new Presentation();
+        new ArchiveAccessor().loadPresentation(loaded, base);
+        assertEquals("Edited", loaded.getSlide(0).getTitle());
+        BitmapItem bitmap = (BitmapItem) loaded.getSlide(0).getSlideItem(0);
+        assertEquals(20, bitmap.getImageHandle().getImage().getWidth());
+    }
+
+    private String createBase(String name, int slides) throws IOException {
+        Presentation presentation = new Presentation();
+        presentation.setTitle("Base");
+        for (int slideNumber = 1; slideNumber <= slides; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + slideNumber);
+            slide.append(1, "Text " + slideNumber);
+            presentation.addSlide(slide);
+        }
+        String path = tempDir.resolve(name).toString();
+        if (BinaryAccessor.isBinaryFile(path)) {
+            new BinaryAccessor().savePresentation(presentation, path);
+        } else {
+            new XMLAccessor().savePresentation(presentation, path);
+        }
+        return path;
+    }
+
+    private static void assertSamePresentation(Presentation expected, Presentation actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int slideNumber = 0; slideNumber < expected.getSize(); slideNumber++) {
+            Slide expectedSlide = expected.getSlide(slideNumber);
+            Slide actualSlide = actual.getSlide(slideNumber);
+            assertEquals(expectedSlide.getTitle(), actualSlide.getTitle());
+            assertEquals(expectedSlide.getSize(), actualSlide.getSize());
+            for (int itemNumber = 0; itemNumber < expectedSlide.getSize(); itemNumber++) {
+                assertEquals(((TextItem) expectedSlide.getSlideItem(itemNumber)).getText(),
+                        ((TextItem) actualSlide.getSlideItem(itemNumber)).getText());
+            }
+        }
+    }
+}
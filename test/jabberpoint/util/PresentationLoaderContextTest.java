@@ -6,8 +6,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
 
 /**
  * Unit test for the PresentationLoaderContext class
@@ -104,4 +110,52 @@ public class PresentationLoaderContextTest {
         // Verify getLoaderStrategy returns the new loader strategy
         assertEquals(newMockLoader, context.getLoaderStrategy());
     }
+    
+    @Test
+    public void testLoadAsyncLoadsIntoNewPresentation() throws Exception {
+        context = new PresentationLoaderContext(new DemoLoader());
+        
+        Presentation loaded = context.loadAsync("").get(10, TimeUnit.SECONDS);
+        
+        assertEquals("Demo Presentation", loaded.getTitle());
+        assertTrue(loaded.getSize() > 0);
+    }
+    
+    @Test
+    public void testLoadAsyncFailure() throws IOException {
+        doThrow(new IOException("broken")).when(mockLoader).loadPresentation(any(), eq("broken.xml"));
+        
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> context.loadAsync("broken.xml").join());
+        assertTrue(ex.getCause() instanceof UncheckedIOException);
+    }
+    
+    @Test
+    public void testLoadAsyncCancelStopsLoader() throws Exception {
+        CountDownLatch firstSlide = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Presentation[] target = new Presentation[1];
+        context = new PresentationLoaderContext((presentation, source) -> {
+            target[0] = presentation;
+            presentation.addSlide(new Slide());
+            firstSlide.countDown();
+            try {
+                cancelled.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            presentation.addSlide(new Slide());
+            presentation.addSlide(new Slide());
+        });
+        
+        CompletableFuture<Presentation> load = context.loadAsync("slow");
+        assertTrue(firstSlide.await(10, TimeUnit.SECONDS));
+        load.cancel(false);
+        cancelled.countDown();
+        
+        // The next load runs on the same thread, after the cancelled one ends
+        context.setLoaderStrategy(new DemoLoader());
+        context.loadAsync("").get(10, TimeUnit.SECONDS);
+        assertEquals(2, target[0].getSize(), "The loader should stop at the next slide");
+    }
 }
@@ -0,0 +1,152 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideSource;
+
+/**
+ * Unit test for the PresentationReloader class
+ */
+public class PresentationReloaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Presentation presentation;
+
+    @BeforeEach
+    public void setUp() {
+        presentation = createPresentation("Deck", "One", "Two", "Three", "Four");
+        presentation.setSlideNumber(2);
+    }
+
+    private static Presentation createPresentation(String title, String... slideTitles) {
+        Presentation result = new Presentation();
+        result.setTitle(title);
+        for (String slideTitle : slideTitles) {
+            Slide slide = new Slide();
+            slide.setTitle(slideTitle);
+            slide.append(1, slideTitle + " text");
+            result.addSlide(slide);
+        }
+        return result;
+    }
+
+    private static Presentation createLazyPresentation(String title, int size, AtomicInteger loads) {
+        Presentation result = new Presentation();
+        result.setTitle(title);
+        result.setSlideSource(new SlideSource() {
+            @Override
+            public int getSize() {
+                return size;
+            }
+
+            @Override
+            public Slide loadSlide(int index) {
+                loads.incrementAndGet();
+                Slide slide = new Slide();
+                slide.setTitle(title + " " + index);
+                return slide;
+            }
+        }, 4);
+        return result;
+    }
+
+    @Test
+    public void testMergeKeepsUnchangedSlides() {
+        Slide first = presentation.getSlide(0);
+        Slide third = presentation.getSlide(2);
+        Presentation loaded = createPresentation("Deck", "One", "Two changed", "Three", "Four");
+
+        assertEquals(1, PresentationReloader.merge(presentation, loaded));
+        assertSame(first, presentation.getSlide(0));
+        assertSame(loaded.getSlide(1), presentation.getSlide(1));
+        assertSame(third, presentation.getSlide(2));
+        assertEquals(2, presentation.getSlideNumber(), "The current slide should be kept");
+    }
+
+    @Test
+    public void testMergeDetectsChangedItems() {
+        Presentation loaded = createPresentation("Deck", "One", "Two", "Three", "Four");
+        loaded.getSlide(3).append(2, "Extra");
+
+        assertEquals(1, PresentationReloader.merge(presentation, loaded));
+        assertEquals(2, presentation.getSlide(3).getSize());
+    }
+
+    @Test
+    public void testMergeInsertedSlideKeepsFollowingSlides() {
+        Slide last = presentation.getSlide(3);
+        Presentation loaded = createPresentation("Deck", "One", "New", "Two", "Three", "Four");
+
+        assertEquals(1, PresentationReloader.merge(presentation, loaded));
+        assertEquals(5, presentation.getSize());
+        assertEquals("New", presentation.getSlide(1).getTitle());
+        assertSame(last, presentation.getSlide(4));
+    }
+
+    @Test
+    public void testMergeRemovedSlides() {
+        Presentation loaded = createPresentation("Renamed", "One", "Two");
+
+        assertEquals(2, PresentationReloader.merge(presentation, loaded));
+        assertEquals(2, presentation.getSize());
+        assertEquals("Renamed", presentation.getTitle());
+        assertEquals(1, presentation.getSlideNumber(), "The current slide should move to the last slide");
+    }
+
+    @Test
+    public void testMergeUnchangedPresentation() {
+        Presentation loaded = createPresentation("Deck", "One", "Two", "Three", "Four");
+
+        assertEquals(0, PresentationReloader.merge(presentation, loaded));
+    }
+
+    @Test
+    public void testMergeReplacesLazyPresentation() {
+        AtomicInteger loads = new AtomicInteger();
+        Presentation lazy = createLazyPresentation("Old", 100, loads);
+        lazy.setSlideNumber(50);
+        Presentation loaded = createLazyPresentation("New", 40, loads);
+        int before = loads.get();
+
+        assertEquals(100, PresentationReloader.merge(lazy, loaded));
+        assertTrue(loads.get() - before <= 1, "Merging should not load every slide");
+        assertEquals(40, lazy.getSize());
+        assertEquals("New", lazy.getTitle());
+        assertEquals(39, lazy.getSlideNumber());
+        assertEquals("New 10", lazy.getSlide(10).getTitle());
+    }
+
+    @Test
+    public void testReloadsWhenFileIsWritten() throws Exception {
+        String file = tempDir.resolve("live.xml").toString();
+        new XMLAccessor().savePresentation(presentation, file);
+        Slide first = presentation.getSlide(0);
+
+        PresentationReloader reloader = new PresentationReloader(presentation, file, 50, Runnable::run);
+        try {
+            Presentation edited = createPresentation("Deck", "One", "Two", "Three changed", "Four");
+            new XMLAccessor().savePresentation(edited, file);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (reloader.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(reloader.getReloadCount() > 0, "The change should have been reloaded");
+            assertEquals("Three changed", presentation.getSlide(2).getTitle());
+            assertSame(first, presentation.getSlide(0));
+            assertEquals(2, presentation.getSlideNumber());
+        } finally {
+            reloader.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the PresentationSaveService class
+ */
+public class PresentationSaveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final PresentationSaveService service = new PresentationSaveService();
+
+    @Test
+    public void testSpecialCharactersAreEscaped() throws IOException {
+        Presentation presentation = createPresentation("Q&A <live>");
+        presentation.getSlide(0).append(new TextItem(1, "if (a < b && c > \"d\")"));
+        Path file = tempDir.resolve("escaped.xml");
+
+        assertEquals(file, service.save(presentation, file.toString()).join());
+
+        Presentation loaded = new Presentation();
+        new StreamingXMLLoader().loadPresentation(loaded, file.toString());
+        assertEquals("Q&A <live>", loaded.getTitle());
+        assertEquals("if (a < b && c > \"d\")", ((TextItem) loaded.getSlide(0).getSlideItem(1)).getText());
+    }
+
+    @Test
+    public void testEditsAfterSaveAreNotWritten() throws IOException {
+        Presentation presentation = createPresentation("Before");
+        Path file = tempDir.resolve("snapshot.jpb");
+
+        CompletableFuture<Path> saved = service.save(presentation, file.toString());
+        presentation.setTitle("After");
+        presentation.addSlide(new Slide());
+        saved.join();
+
+        Presentation loaded = new Presentation();
+        new BinaryAccessor().loadPresentation(loaded, file.toString());
+        assertEquals("Before", loaded.getTitle());
+        assertEquals(1, loaded.getSize());
+    }
+
+    @Test
+    public void testEditsInPlaceAreSaved() throws IOException {
+        Presentation presentation = createPresentation("Deck");
+        presentation.getSlide(0).setTitle("one");
+        Path file = tempDir.resolve("edited.xml");
+        service.save(presentation, file.toString()).join();
+
+        presentation.getSlide(0).setTitle("EDITED");
+        presentation.notifyObservers();
+        service.save(presentation, file.toString()).join();
+
+        assertTrue(Files.readString(file).contains("<title>EDITED</title>"));
+    }
+
+    @Test
+    public void testExistingFileIsReplacedWithoutTempFiles() throws IOException {
+        Path file = tempDir.resolve("deck.xml");
+        Files.writeString(file, "old content");
+
+        service.save(createPresentation("New"), file.toString()).join();
+
+        assertTrue(Files.readString(file).contains("<showtitle>New</showtitle>"));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "No temporary file should be left behind");
+        }
+    }
+
+    @Test
+    public void testFailureCompletesExceptionally() {
+        String file = tempDir.resolve("missing").resolve("deck.xml").toString();
+
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> service.save(createPresentation("Title"), file).join());
+        assertTrue(thrown.getCause() instanceof UncheckedIOException);
+    }
+
+    private static Presentation createPresentation(String title) {
+        Presentation presentation = new Presentation();
+        presentation.setTitle(title);
+        Slide slide = new Slide();
+        slide.setTitle("Slide");
+        slide.append(1, "Text");
+        presentation.addSlide(slide);
+        return presentation;
+    }
+}
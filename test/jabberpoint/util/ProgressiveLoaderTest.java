@@ -0,0 +1,119 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+
+/**
+ * Unit test for the ProgressiveLoader class
+ */
+public class ProgressiveLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String createFile(String name, int slides) throws IOException {
+        Presentation presentation = new Presentation();
+        presentation.setTitle("Progressive");
+        for (int slideNumber = 1; slideNumber <= slides; slideNumber++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + slideNumber);
+            slide.append(1, "Text of slide " + slideNumber);
+            presentation.addSlide(slide);
+        }
+        String file = tempDir.resolve(name).toString();
+        PresentationSaveService.saverFor(file).savePresentation(presentation, file);
+        return file;
+    }
+
+    @Test
+    public void testSlidesArePublishedWhileLoading() throws Exception {
+        String file = createFile("deck.xml", 2000);
+        Presentation presentation = new Presentation();
+        List<Integer> slideCounts = new ArrayList<>();
+        List<Long> bytes = new ArrayList<>();
+
+        CompletableFuture<Presentation> load = new ProgressiveLoader(presentation, Runnable::run)
+                .load(file, (slides, read, total) -> {
+                    slideCounts.add(slides);
+                    bytes.add(read * 100 / total);
+                });
+
+        assertSame(presentation, load.get(10, TimeUnit.SECONDS));
+        assertEquals(2000, presentation.getSize());
+        assertEquals("Progressive", presentation.getTitle());
+        assertEquals(0, presentation.getSlideNumber());
+        assertTrue(slideCounts.size() > 1, "Progress should be reported before the end");
+        assertTrue(slideCounts.get(0) < 2000, "Slides should be added before the whole file is read");
+        assertEquals(Integer.valueOf(2000), slideCounts.get(slideCounts.size() - 1));
+        assertEquals(Long.valueOf(100), bytes.get(bytes.size() - 1));
+    }
+
+    @Test
+    public void testOnDemandFormatIsShownAtOnce() throws Exception {
+        String file = createFile("deck.jpb", 50);
+        Presentation presentation = new Presentation();
+
+        new ProgressiveLoader(presentation, Runnable::run).load(file, null).get(10, TimeUnit.SECONDS);
+
+        assertEquals(50, presentation.getSize());
+        assertEquals("Slide 50", presentation.getSlide(49).getTitle());
+    }
+
+    @Test
+    public void testJournalIsReplayed() throws Exception {
+        String file = createFile("journaled.xml", 3);
+        Presentation edited = new Presentation();
+        PresentationJournal.load(edited, file);
+        PresentationJournal journal = PresentationJournal.open(edited, file);
+        edited.setTitle("Edited");
+        edited.removeSlide(0);
+        journal.close();
+        Presentation presentation = new Presentation();
+
+        new ProgressiveLoader(presentation, Runnable::run).load(file, null).get(10, TimeUnit.SECONDS);
+
+        assertEquals("Edited", presentation.getTitle());
+        assertEquals(2, presentation.getSize());
+        assertEquals("Slide 2", presentation.getSlide(0).getTitle());
+    }
+
+    @Test
+    public void testCancelStopsLoading() throws Exception {
+        String file = createFile("cancel.xml", 2000);
+        Presentation presentation = new Presentation();
+        CompletableFuture<CompletableFuture<Presentation>> started = new CompletableFuture<>();
+
+        CompletableFuture<Presentation> load = new ProgressiveLoader(presentation, Runnable::run)
+                .load(file, (slides, read, total) -> started.join().cancel(false));
+        started.complete(load);
+
+        assertThrows(CancellationException.class, () -> load.get(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertTrue(presentation.getSize() < 2000, "Loading should stop when cancelled");
+    }
+
+    @Test
+    public void testMissingFileFails() {
+        Presentation presentation = new Presentation();
+
+        CompletableFuture<Presentation> load = new ProgressiveLoader(presentation, Runnable::run)
+                .load(tempDir.resolve("missing.xml").toString(), null);
+
+        CompletionException ex = assertThrows(CompletionException.class, load::join);
+        assertTrue(ex.getCause() instanceof UncheckedIOException);
+    }
+}
@@ -0,0 +1,106 @@
+package jabberpoint.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jabberpoint.model.BitmapItem;
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideItem;
+import jabberpoint.model.TextItem;
+
+/**
+ * Unit test for the StreamingXMLLoader class
+ */
+public class StreamingXMLLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSameResultAsDomLoader() throws IOException {
+        Presentation expected = new Presentation();
+        new XMLLoader().loadPresentation(expected, "test.xml");
+        Presentation actual = new Presentation();
+        new StreamingXMLLoader().loadPresentation(actual, "test.xml");
+
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int slideNumber = 0; slideNumber < expected.getSize(); slideNumber++) {
+            Slide expectedSlide = expected.getSlide(slideNumber);
+            Slide actualSlide = actual.getSlide(slideNumber);
+            assertEquals(expectedSlide.getTitle(), actualSlide.getTitle());
+            assertEquals(expectedSlide.getSize(), actualSlide.getSize());
+            for (int itemNumber = 0; itemNumber < expectedSlide.getSize(); itemNumber++) {
+                SlideItem expectedItem = expectedSlide.getSlideItem(itemNumber);
+                SlideItem actualItem = actualSlide.getSlideItem(itemNumber);
+                assertEquals(expectedItem.getClass(), actualItem.getClass());
+                assertEquals(expectedItem.getLevel(), actualItem.getLevel());
+                if (expectedItem instanceof TextItem) {
+                    assertEquals(((TextItem) expectedItem).getText(), ((TextItem) actualItem).getText());
+                } else {
+                    assertEquals(((BitmapItem) expectedItem).getName(), ((BitmapItem) actualItem).getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingLevelDefaultsToOne() throws IOException {
+        File xmlFile = tempDir.resolve("nolevel.xml").toFile();
+        Files.writeString(xmlFile.toPath(), "<?xml version=\"1.0\"?>\n" +
+                "<presentation>\n" +
+                "    <showtitle>Title</showtitle>\n" +
+                "    <slide>\n" +
+                "        <title>Slide</title>\n" +
+                "        <item kind=\"text\">No level</item>\n" +
+                "        <item kind=\"video\" level=\"1\">Unknown kind</item>\n" +
+                "    </slide>\n" +
+                "</presentation>");
+
+        Presentation presentation = new Presentation();
+        new StreamingXMLLoader().loadPresentation(presentation, xmlFile.getPath());
+
+        Slide slide = presentation.getSlide(0);
+        assertEquals(1, slide.getSize(), "Unknown item kinds should be skipped");
+        assertEquals(1, slide.getSlideItem(0).getLevel());
+    }
+
+    @Test
+    public void testMissingFileThrows() {
+        assertThrows(IOException.class, () ->
+                new StreamingXMLLoader().loadPresentation(new Presentation(), "missing.xml"));
+    }
+
+    @Test
+    public void testObserversAreNotifiedOnce() throws IOException {
+        Presentation presentation = new Presentation();
+        int[] updates = new int[1];
+        presentation.addObserver((p, slide) -> updates[0]++);
+
+        new StreamingXMLLoader().loadPresentation(presentation, "test.xml");
+
+        assertTrue(presentation.getSize() > 1);
+        assertEquals(1, updates[0], "Loading should notify observers once");
+    }
+
+    @Test
+    public void testTruncatedFileThrows() throws IOException {
+        Path xmlFile = tempDir.resolve("truncated.xml");
+        Files.writeString(xmlFile, "<?xml version=\"1.0\"?>\n" +
+                "<presentation>\n" +
+                "    <showtitle>Title</showtitle>\n" +
+                "    <slide>\n" +
+                "        <title>Slide</title>\n" +
+                "        <item kind=\"text\" level=\"1\">Cut o");
+
+        assertThrows(IOException.class, () ->
+                new StreamingXMLLoader().loadPresentation(new Presentation(), xmlFile.toString()));
+    }
+}
@@ -0,0 +1,136 @@
+package jabberpoint.view;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import jabberpoint.model.Presentation;
+import jabberpoint.model.Slide;
+import jabberpoint.model.SlideLayout;
+import jabberpoint.model.Style;
+
+/**
+ * Unit test for the SlidePrefetcher class
+ */
+public class SlidePrefetcherTest {
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 80;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private Presentation presentation;
+    private SlidePrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() {
+        Style.createStyles();
+        presentation = new Presentation();
+        for (int i = 0; i < 5; i++) {
+            Slide slide = new Slide();
+            slide.setTitle("Slide " + i);
+            slide.append(1, "Item on slide " + i);
+            presentation.addSlide(slide);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    void testPrefetchesNeighbouringSlides() throws InterruptedException {
+        prefetcher = new SlidePrefetcher(presentation, 2, SlidePrefetcher.DEFAULT_MEMORY_BUDGET);
+        presentation.setSlideNumber(2);
+        prefetcher.setViewportSize(presentation, WIDTH, HEIGHT);
+
+        waitForCachedSlides(3);
+
+        assertNotNull(prefetcher.getRendered(presentation.getSlide(1), layoutOf(1)), "Previous slide");
+        assertNotNull(prefetcher.getRendered(presentation.getSlide(3), layoutOf(3)), "Next slide");
+        assertNotNull(prefetcher.getRendered(presentation.getSlide(4), layoutOf(4)), "Slide after next");
+        assertNull(prefetcher.getRendered(presentation.getSlide(0), layoutOf(0)), "Outside prefetch depth");
+        assertEquals(3, prefetcher.getHits());
+        assertEquals(1, prefetcher.getMisses());
+    }
+
+    @Test
+    void testChangedSlideIsNotServedFromCache() throws InterruptedException {
+        prefetcher = new SlidePrefetcher(presentation, 1, SlidePrefetcher.DEFAULT_MEMORY_BUDGET);
+        presentation.setSlideNumber(1);
+        prefetcher.setViewportSize(presentation, WIDTH, HEIGHT);
+        waitForCachedSlides(2);
+
+        presentation.getSlide(2).append(1, "Added later");
+
+        assertNull(prefetcher.getRendered(presentation.getSlide(2), layoutOf(2)));
+    }
+
+    @Test
+    void testMemoryBudgetLimitsCachedSlides() throws InterruptedException {
+        long oneSlide = (long) WIDTH * HEIGHT * 4;
+        prefetcher = new SlidePrefetcher(presentation, 2, SlidePrefetcher.DEFAULT_MEMORY_BUDGET);
+        presentation.setSlideNumber(2);
+        prefetcher.setViewportSize(presentation, WIDTH, HEIGHT);
+        waitForCachedSlides(3);
+
+        prefetcher.setMemoryBudget(oneSlide);
+
+        assertEquals(1, prefetcher.getCachedSlideCount());
+        assertEquals(oneSlide, prefetcher.getResidentBytes());
+    }
+
+    @Test
+    void testRemovedSlideIsEvicted() throws InterruptedException {
+        prefetcher = new SlidePrefetcher(presentation, 2, SlidePrefetcher.DEFAULT_MEMORY_BUDGET);
+        presentation.setSlideNumber(2);
+        prefetcher.setViewportSize(presentation, WIDTH, HEIGHT);
+        waitForCachedSlides(3);
+        Slide last = presentation.getSlide(4);
+        SlideLayout lastLayout = layoutOf(4);
+
+        presentation.removeSlide(4);
+
+        assertEquals(2, prefetcher.getCachedSlideCount());
+        assertNull(prefetcher.getRendered(last, lastLayout));
+    }
+
+    @Test
+    void testShutdownStopsObserving() throws InterruptedException {
+        prefetcher = new SlidePrefetcher(presentation, 1, SlidePrefetcher.DEFAULT_MEMORY_BUDGET);
+        presentation.setSlideNumber(1);
+        prefetcher.setViewportSize(presentation, WIDTH, HEIGHT);
+        waitForCachedSlides(2);
+
+        prefetcher.shutdown();
+        presentation.setSlideNumber(3);
+        presentation.removeSlide(0);
+
+        assertEquals(0, prefetcher.getCachedSlideCount());
+        assertNull(prefetcher.getRendered(presentation.getSlide(3), layoutOf(3)));
+    }
+
+    private SlideLayout layoutOf(int slideNumber) {
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            return presentation.getSlide(slideNumber).getLayout(g, new Rectangle(0, 0, WIDTH, HEIGHT), null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void waitForCachedSlides(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (prefetcher.getCachedSlideCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, prefetcher.getCachedSlideCount());
+    }
+}
@@ -9,6 +9,7 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Font;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 
 import jabberpoint.model.Presentation;
 import jabberpoint.model.Slide;
@@ -106,4 +107,31 @@ public class SlideViewerComponentTest {
             slideViewer.update(presentation, null);
         });
     }
+    
+    @Test
+    void testRepaintReusesBackBuffer() {
+        slideViewer.setSize(600, 400);
+        BufferedImage target = new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            slideViewer.paintComponent(g);
+            slideViewer.paintComponent(g);
+            assertEquals(1, slideViewer.getRenderCount(), "Exposure repaints should only blit");
+            
+            // A notification that does not change the slide does not re-render
+            slideViewer.update(presentation, presentation.getCurrentSlide());
+            slideViewer.paintComponent(g);
+            assertEquals(1, slideViewer.getRenderCount());
+            
+            presentation.getCurrentSlide().setTitle("Changed");
+            slideViewer.paintComponent(g);
+            assertEquals(2, slideViewer.getRenderCount(), "Changing the slide should re-render");
+            
+            slideViewer.setSize(800, 600);
+            slideViewer.paintComponent(g);
+            assertEquals(3, slideViewer.getRenderCount(), "Resizing should re-render");
+        } finally {
+            g.dispose();
+        }
+    }
 }